@@ -1,3 +1,23 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 // Core interfaces and abstract classes:
 
@@ -6,6 +26,33 @@ interface NotificationChannel {
     void send(Notification notification);
 }
 
+// Interface for channels whose provider takes many notifications in one call
+interface BatchNotificationChannel extends NotificationChannel {
+    void sendBatch(List<Notification> notifications);
+
+    @Override
+    default void send(Notification notification) {
+        sendBatch(List.of(notification));
+    }
+
+    // same payload to many users, providers with recipient lists override this to skip the per user notifications
+    default void sendBroadcast(BroadcastPayload payload, List<String> userIds) {
+        List<Notification> notifications = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            notifications.add(new BroadcastNotification(userId, payload));
+        }
+        sendBatch(notifications);
+    }
+
+    // single send channels are wrapped so the dispatcher only deals with batches
+    static BatchNotificationChannel of(NotificationChannel channel) {
+        if (channel instanceof BatchNotificationChannel batchChannel) {
+            return batchChannel;
+        }
+        return new SingleSendChannelAdapter(channel);
+    }
+}
+
 // Abstract class for notification
 abstract class Notification {
     protected String id;
@@ -16,6 +63,22 @@ abstract class Notification {
     protected LocalDateTime timestamp;
 
     // Constructor, getters, setters
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public NotificationType getType() {
+        return type;
+    }
+
+    public NotificationPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(NotificationPriority priority) {
+        this.priority = priority;
+    }
 }
 
 // Interface for notification factory
@@ -25,17 +88,27 @@ interface NotificationFactory {
 
 // Implementation of different notification channels:
 
-class EmailNotification implements NotificationChannel {
+class EmailNotification implements BatchNotificationChannel {
     @Override
-    public void send(Notification notification) {
-        // Implementation for sending email
+    public void sendBatch(List<Notification> notifications) {
+        // Implementation for sending emails in one provider call
+    }
+
+    @Override
+    public void sendBroadcast(BroadcastPayload payload, List<String> userIds) {
+        // Implementation for sending one email body to a recipient list
     }
 }
 
-class SMSNotification implements NotificationChannel {
+class SMSNotification implements BatchNotificationChannel {
     @Override
-    public void send(Notification notification) {
-        // Implementation for sending SMS
+    public void sendBatch(List<Notification> notifications) {
+        // Implementation for sending SMS in one provider call
+    }
+
+    @Override
+    public void sendBroadcast(BroadcastPayload payload, List<String> userIds) {
+        // Implementation for sending one SMS text to a recipient list
     }
 }
 
@@ -46,6 +119,27 @@ class PushNotification implements NotificationChannel {
     }
 }
 
+// Class for adapting a single send channel, a batch is sent one notification at a time
+class SingleSendChannelAdapter implements BatchNotificationChannel {
+    private final NotificationChannel channel;
+
+    public SingleSendChannelAdapter(NotificationChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void send(Notification notification) {
+        channel.send(notification);
+    }
+
+    @Override
+    public void sendBatch(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            channel.send(notification);
+        }
+    }
+}
+
 // Concrete notification types:
 
 class MessageNotification extends Notification {
@@ -64,53 +158,347 @@ class AlertNotification extends Notification {
 
 // User preference management:
 
+// Class for preference bits
+// all preferences of a user fit in one long: an opt-out bit per type, then a block of channel bits per type
+final class PreferenceBits {
+    public static final int NUM_TYPES = NotificationType.values().length;
+    public static final int CHANNELS_PER_TYPE = (Long.SIZE - NUM_TYPES) / NUM_TYPES;
+    private static final long CHANNEL_MASK = (1L << CHANNELS_PER_TYPE) - 1;
+
+    private PreferenceBits() {
+    }
+
+    public static boolean isOptedOut(long bits, NotificationType type) {
+        return (bits & (1L << type.ordinal())) != 0;
+    }
+
+    // bit i set when the channel with id i is chosen for this type
+    public static int getChannelMask(long bits, NotificationType type) {
+        return (int) ((bits >>> channelShift(type)) & CHANNEL_MASK);
+    }
+
+    public static long withOptOut(long bits, NotificationType type, boolean optedOut) {
+        long bit = 1L << type.ordinal();
+        return optedOut ? bits | bit : bits & ~bit;
+    }
+
+    public static long withChannel(long bits, NotificationType type, int channelId, boolean chosen) {
+        long bit = 1L << (channelShift(type) + channelId);
+        return chosen ? bits | bit : bits & ~bit;
+    }
+
+    private static int channelShift(NotificationType type) {
+        return NUM_TYPES + type.ordinal() * CHANNELS_PER_TYPE;
+    }
+}
+
+// Class for channel registry
+// gives every channel a small id for preference bits, the channel set of every mask is built once and shared
+class ChannelRegistry {
+    public static final int MAX_CHANNELS = PreferenceBits.CHANNELS_PER_TYPE;
+
+    private final NotificationChannel[] channels = new NotificationChannel[MAX_CHANNELS];
+    private final Map<NotificationChannel, Integer> ids = new HashMap<>();
+    private final AtomicReferenceArray<Set<NotificationChannel>> channelSets = new AtomicReferenceArray<>(1 << MAX_CHANNELS);
+    private volatile int numChannels;
+
+    public synchronized int register(NotificationChannel channel) {
+        Integer id = ids.get(channel);
+        if (id != null) {
+            return id;
+        }
+        if (numChannels == MAX_CHANNELS) {
+            throw new IllegalStateException("At most " + MAX_CHANNELS + " channels can be registered");
+        }
+        channels[numChannels] = channel;
+        ids.put(channel, numChannels);
+        return numChannels++;
+    }
+
+    public synchronized int getId(NotificationChannel channel) {
+        Integer id = ids.get(channel);
+        if (id == null) {
+            throw new IllegalArgumentException("Channel is not registered");
+        }
+        return id;
+    }
+
+    public int getNumChannels() {
+        return numChannels;
+    }
+
+    public NotificationChannel getChannel(int id) {
+        if (id < 0 || id >= numChannels) {
+            throw new IllegalArgumentException("Unknown channel id " + id);
+        }
+        return channels[id];
+    }
+
+    // two threads may build the same set, either copy is equal
+    public Set<NotificationChannel> getChannels(int channelMask) {
+        Set<NotificationChannel> channelSet = channelSets.get(channelMask);
+        if (channelSet == null) {
+            NotificationChannel[] chosen = new NotificationChannel[Integer.bitCount(channelMask)];
+            int count = 0;
+            for (int mask = channelMask; mask != 0; mask &= mask - 1) {
+                chosen[count++] = getChannel(Integer.numberOfTrailingZeros(mask));
+            }
+            channelSet = Set.of(chosen);
+            channelSets.set(channelMask, channelSet);
+        }
+        return channelSet;
+    }
+}
+
+// Class for notification preferences of one user, a mutable view over its preference bits
 class NotificationPreference {
-    private String userId;
-    private Map<NotificationType, Set<NotificationChannel>> channelPreferences;
-    private Map<NotificationType, Boolean> optOutPreferences;
+    private final String userId;
+    private final ChannelRegistry channelRegistry;
+    private long bits;
+
+    public NotificationPreference(String userId, ChannelRegistry channelRegistry) {
+        this.userId = userId;
+        this.channelRegistry = channelRegistry;
+    }
 
     public void addChannelPreference(NotificationType type, NotificationChannel channel) {
-        // Implementation
+        bits = PreferenceBits.withChannel(bits, type, channelRegistry.getId(channel), true);
     }
 
     public void optOut(NotificationType type) {
-        // Implementation
+        bits = PreferenceBits.withOptOut(bits, type, true);
     }
 
     public boolean isOptedOut(NotificationType type) {
-        // Implementation
-        return false;
+        return PreferenceBits.isOptedOut(bits, type);
+    }
+
+    public Set<NotificationChannel> getChannels(NotificationType type) {
+        return channelRegistry.getChannels(PreferenceBits.getChannelMask(bits, type));
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public long getBits() {
+        return bits;
+    }
+}
+
+// Class for compact preference store
+// users get a dense index on first use, their preferences are one long at that index, no object per user
+// user ids are found through an open addressing table of indexes, reads take no lock and allocate nothing
+class CompactPreferenceStore implements ChannelResolver {
+    private static final int EMPTY = 0;
+
+    private final ChannelRegistry channelRegistry;
+    private final AtomicReferenceArray<String> userIds;
+    private final AtomicLongArray bits;
+    // user index + 1, EMPTY when the slot is free
+    private final AtomicIntegerArray slots;
+    private final int slotMask;
+    private volatile int numUsers;
+
+    public CompactPreferenceStore(int capacity, ChannelRegistry channelRegistry) {
+        if (capacity <= 0 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("Capacity should be positive and at most " + (1 << 29));
+        }
+        this.channelRegistry = channelRegistry;
+        this.userIds = new AtomicReferenceArray<>(capacity);
+        this.bits = new AtomicLongArray(capacity);
+        // at most half full keeps probes short
+        int numSlots = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.slots = new AtomicIntegerArray(numSlots);
+        this.slotMask = numSlots - 1;
+    }
+
+    // returns the index of the user, adding it with no preferences when it is not known yet
+    public synchronized int addUser(String userId) {
+        int slot = slotOf(userId);
+        for (int index = slots.get(slot) - 1; index >= 0; index = slots.get(slot) - 1) {
+            if (userIds.get(index).equals(userId)) {
+                return index;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        if (numUsers == userIds.length()) {
+            throw new IllegalStateException("Preference store is full");
+        }
+        int index = numUsers;
+        userIds.set(index, userId);
+        slots.set(slot, index + 1);
+        numUsers = index + 1;
+        return index;
+    }
+
+    // -1 when the user is not known
+    public int indexOf(String userId) {
+        int slot = slotOf(userId);
+        for (int index = slots.get(slot) - 1; index >= 0; index = slots.get(slot) - 1) {
+            if (userIds.get(index).equals(userId)) {
+                return index;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return -1;
+    }
+
+    // bits naming a channel id that is not registered are rejected here, a broadcast could not deliver them
+    public void setPreferences(String userId, long preferenceBits) {
+        int numChannels = channelRegistry.getNumChannels();
+        for (NotificationType type : NotificationType.values()) {
+            if (PreferenceBits.getChannelMask(preferenceBits, type) >>> numChannels != 0) {
+                throw new IllegalArgumentException("Preferences of " + userId + " name an unknown channel for " + type);
+            }
+        }
+        bits.set(addUser(userId), preferenceBits);
+    }
+
+    public void addChannelPreference(String userId, NotificationType type, NotificationChannel channel) {
+        int channelId = channelRegistry.getId(channel);
+        bits.getAndUpdate(addUser(userId), current -> PreferenceBits.withChannel(current, type, channelId, true));
+    }
+
+    public void removeChannelPreference(String userId, NotificationType type, NotificationChannel channel) {
+        int channelId = channelRegistry.getId(channel);
+        bits.getAndUpdate(addUser(userId), current -> PreferenceBits.withChannel(current, type, channelId, false));
+    }
+
+    public void optOut(String userId, NotificationType type) {
+        bits.getAndUpdate(addUser(userId), current -> PreferenceBits.withOptOut(current, type, true));
+    }
+
+    public void optIn(String userId, NotificationType type) {
+        bits.getAndUpdate(addUser(userId), current -> PreferenceBits.withOptOut(current, type, false));
+    }
+
+    public boolean isOptedOut(int userIndex, NotificationType type) {
+        return PreferenceBits.isOptedOut(bits.get(userIndex), type);
+    }
+
+    public boolean isOptedOut(String userId, NotificationType type) {
+        int index = indexOf(userId);
+        return index >= 0 && isOptedOut(index, type);
+    }
+
+    // empty when the user is not known or opted out
+    @Override
+    public Set<NotificationChannel> resolveChannels(String userId, NotificationType type) {
+        int index = indexOf(userId);
+        if (index < 0) {
+            return Set.of();
+        }
+        long userBits = bits.get(index);
+        if (PreferenceBits.isOptedOut(userBits, type)) {
+            return Set.of();
+        }
+        return channelRegistry.getChannels(PreferenceBits.getChannelMask(userBits, type));
+    }
+
+    public long getPreferences(int userIndex) {
+        return bits.get(userIndex);
+    }
+
+    public ChannelRegistry getChannelRegistry() {
+        return channelRegistry;
+    }
+
+    public int size() {
+        return numUsers;
+    }
+
+    // users added after this call are not part of the stream
+    public RecipientSource recipients() {
+        int end = numUsers;
+        return new RecipientSource() {
+            private int next;
+
+            @Override
+            public int nextChunk(String[] chunkUserIds, long[] preferenceBits) {
+                int count = Math.min(chunkUserIds.length, end - next);
+                for (int i = 0; i < count; i++) {
+                    chunkUserIds[i] = userIds.get(next + i);
+                    preferenceBits[i] = bits.get(next + i);
+                }
+                next += count;
+                return count;
+            }
+
+            @Override
+            public ChannelRegistry getChannelRegistry() {
+                return channelRegistry;
+            }
+        };
+    }
+
+    private int slotOf(String userId) {
+        int hash = userId.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & slotMask;
     }
 }
 
 // Core notification service:
 
-class NotificationService {
+class NotificationService implements ChannelResolver {
     private Map<String, User> users;
-    private Map<String, NotificationPreference> preferences;
+    private CompactPreferenceStore preferences;
     private List<NotificationChannel> channels;
     private NotificationFactory notificationFactory;
+    private NotificationDispatcher dispatcher;
+    private BroadcastEngine broadcastEngine;
 
+    // sending happens on the dispatcher threads, the caller only waits for the hand off
     public void sendNotification(String userId, String content, NotificationType type) {
-        NotificationPreference userPrefs = preferences.get(userId);
-        if (userPrefs.isOptedOut(type)) {
-            return;
+        if (!dispatcher.trySubmit(userId, content, type)) {
+            throw new IllegalStateException("Notification queue is full, retry later");
         }
+    }
 
-        Notification notification = notificationFactory.createNotification(userId, content, type);
-        Set<NotificationChannel> userChannels = userPrefs.getChannelPreferences().get(type);
-
-        for (NotificationChannel channel : userChannels) {
-            channel.send(notification);
+    public void sendNotification(String userId, String content, NotificationType type, NotificationPriority priority) {
+        if (!dispatcher.trySubmit(userId, content, type, priority)) {
+            throw new IllegalStateException("Notification queue is full for priority " + priority + ", retry later");
         }
     }
 
+    public boolean trySendNotification(String userId, String content, NotificationType type) {
+        return dispatcher.trySubmit(userId, content, type);
+    }
+
+    public boolean trySendNotification(String userId, String content, NotificationType type, NotificationPriority priority) {
+        return dispatcher.trySubmit(userId, content, type, priority);
+    }
+
+    // empty when the user opted out, called by the dispatcher for every submitted notification
+    @Override
+    public Set<NotificationChannel> resolveChannels(String userId, NotificationType type) {
+        return preferences.resolveChannels(userId, type);
+    }
+
+    public void setDispatcher(NotificationDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    // preferences, channel resolution and broadcast recipients all come from this store
+    public void setPreferenceStore(CompactPreferenceStore preferences) {
+        this.preferences = preferences;
+    }
+
+    // every user with preferences gets the same payload, nothing is built per user on the calling side
+    public BroadcastResult broadcast(String content, NotificationType type, NotificationPriority priority) throws InterruptedException {
+        return broadcastEngine.broadcast(new BroadcastPayload(content, type, priority), preferences.recipients());
+    }
+
+    public void setBroadcastEngine(BroadcastEngine broadcastEngine) {
+        this.broadcastEngine = broadcastEngine;
+    }
+
     public void registerUser(User user) {
         // Implementation
     }
 
     public void updatePreferences(String userId, NotificationPreference preference) {
-        // Implementation
+        preferences.setPreferences(userId, preference.getBits());
     }
 }
 
@@ -123,11 +511,26 @@ enum NotificationType {
     SYSTEM_UPDATE
 }
 
+// URGENT preempts every other priority, the rest are drained in proportion to their weight
 enum NotificationPriority {
-    LOW,
-    MEDIUM,
-    HIGH,
-    URGENT
+    LOW(1),
+    MEDIUM(2),
+    HIGH(4),
+    URGENT(0);
+
+    private final int drainWeight;
+
+    NotificationPriority(int drainWeight) {
+        this.drainWeight = drainWeight;
+    }
+
+    public int getDrainWeight() {
+        return drainWeight;
+    }
+
+    public boolean preempts() {
+        return drainWeight == 0;
+    }
 }
 
 class User {
@@ -165,6 +568,939 @@ class NotificationBuilder {
     }
 }
 
+// Asynchronous dispatch pipeline:
+
+// Interface for channel resolution
+interface ChannelResolver {
+    Set<NotificationChannel> resolveChannels(String userId, NotificationType type);
+}
+
+// Class for a notification waiting in the ingest queue
+class DispatchRequest {
+    private final String userId;
+    private final String content;
+    private final NotificationType type;
+    private final NotificationPriority priority;
+
+    public DispatchRequest(String userId, String content, NotificationType type, NotificationPriority priority) {
+        this.userId = userId;
+        this.content = content;
+        this.type = type;
+        this.priority = priority;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public NotificationType getType() {
+        return type;
+    }
+
+    public NotificationPriority getPriority() {
+        return priority;
+    }
+}
+
+// Class for priority lanes
+// one bounded ring per priority so a LOW backlog can not take the room of URGENT work
+// URGENT is always taken first, the other lanes share the rest by their drain weight in rounds
+class PriorityLanes<T> {
+    private static final NotificationPriority[] PRIORITIES = NotificationPriority.values();
+
+    private final Object[][] items;
+    private final long[][] enqueuedNanos;
+    private final int[] heads;
+    private final int[] sizes;
+    private final int[] credits;
+    private final long[] taken;
+    private final long[] totalWaitNanos;
+    private final long[] maxWaitNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int totalSize;
+
+    public PriorityLanes(int capacityPerPriority) {
+        if (capacityPerPriority <= 0) {
+            throw new IllegalArgumentException("Lane capacity should be positive");
+        }
+        items = new Object[PRIORITIES.length][capacityPerPriority];
+        enqueuedNanos = new long[PRIORITIES.length][capacityPerPriority];
+        heads = new int[PRIORITIES.length];
+        sizes = new int[PRIORITIES.length];
+        credits = new int[PRIORITIES.length];
+        taken = new long[PRIORITIES.length];
+        totalWaitNanos = new long[PRIORITIES.length];
+        maxWaitNanos = new long[PRIORITIES.length];
+    }
+
+    // false when the lane of this priority is full
+    public boolean offer(T item, NotificationPriority priority) {
+        lock.lock();
+        try {
+            return enqueue(item, priority.ordinal());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean offer(T item, NotificationPriority priority, long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        int p = priority.ordinal();
+        lock.lockInterruptibly();
+        try {
+            while (sizes[p] == items[p].length) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = notFull.awaitNanos(remainingNanos);
+            }
+            return enqueue(item, p);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // null when nothing arrived within the timeout
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (totalSize == 0) {
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+                remainingNanos = notEmpty.awaitNanos(remainingNanos);
+            }
+            return dequeue(nextPriority());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // takes what is queued right now without waiting, in the same order as poll
+    public int drainTo(List<? super T> target, int maxItems) {
+        lock.lock();
+        try {
+            int count = Math.min(maxItems, totalSize);
+            for (int i = 0; i < count; i++) {
+                target.add(dequeue(nextPriority()));
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return totalSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getDepth(NotificationPriority priority) {
+        lock.lock();
+        try {
+            return sizes[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // time spent waiting in this lane, averaged over everything taken so far
+    public long getAverageWaitNanos(NotificationPriority priority) {
+        lock.lock();
+        try {
+            int p = priority.ordinal();
+            return taken[p] == 0 ? 0 : totalWaitNanos[p] / taken[p];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaxWaitNanos(NotificationPriority priority) {
+        lock.lock();
+        try {
+            return maxWaitNanos[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean enqueue(T item, int p) {
+        int capacity = items[p].length;
+        if (sizes[p] == capacity) {
+            return false;
+        }
+        int tail = (heads[p] + sizes[p]) % capacity;
+        items[p][tail] = item;
+        enqueuedNanos[p][tail] = System.nanoTime();
+        sizes[p]++;
+        totalSize++;
+        notEmpty.signal();
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T dequeue(int p) {
+        int head = heads[p];
+        T item = (T) items[p][head];
+        items[p][head] = null;
+        long waitNanos = System.nanoTime() - enqueuedNanos[p][head];
+        heads[p] = (head + 1) % items[p].length;
+        sizes[p]--;
+        totalSize--;
+        taken[p]++;
+        totalWaitNanos[p] += waitNanos;
+        maxWaitNanos[p] = Math.max(maxWaitNanos[p], waitNanos);
+        notFull.signalAll();
+        return item;
+    }
+
+    // called with at least one item queued
+    private int nextPriority() {
+        for (int pass = 0; pass < 2; pass++) {
+            for (int p = PRIORITIES.length - 1; p >= 0; p--) {
+                if (sizes[p] > 0 && (PRIORITIES[p].preempts() || credits[p] > 0)) {
+                    if (!PRIORITIES[p].preempts()) {
+                        credits[p]--;
+                    }
+                    return p;
+                }
+            }
+            // every backlogged lane used its share for this round
+            for (int p = 0; p < PRIORITIES.length; p++) {
+                credits[p] = PRIORITIES[p].getDrainWeight();
+            }
+        }
+        throw new IllegalStateException("No lane has queued work");
+    }
+}
+
+// Class for a channel lane
+// queue of one channel drained by its own workers, a slow channel only fills its own queue
+// every worker accumulates a batch and sends it once it is full or the first notification lingered long enough
+class ChannelLane {
+    private final NotificationChannel channel;
+    private final BatchNotificationChannel batchChannel;
+    private final PriorityLanes<Notification> queue;
+    private final int numWorkers;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public ChannelLane(NotificationChannel channel, int capacityPerPriority, int numWorkers) {
+        this(channel, capacityPerPriority, numWorkers, 1, 0);
+    }
+
+    public ChannelLane(NotificationChannel channel, int capacityPerPriority, int numWorkers, int maxBatchSize, long lingerMillis) {
+        if (numWorkers <= 0 || maxBatchSize <= 0 || lingerMillis < 0) {
+            throw new IllegalArgumentException("Lane workers and batch size should be positive, linger should not be negative");
+        }
+        this.channel = channel;
+        this.batchChannel = BatchNotificationChannel.of(channel);
+        this.queue = new PriorityLanes<>(capacityPerPriority);
+        this.numWorkers = numWorkers;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    }
+
+    // false when the lane of this priority is full, the notification is counted as rejected for this channel
+    public boolean offer(Notification notification) {
+        if (queue.offer(notification, notification.getPriority())) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    // sends batches until stopped and the queue is empty
+    public void drain(NotificationDispatcher dispatcher) {
+        List<Notification> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            try {
+                Notification first = queue.poll(NotificationDispatcher.POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (dispatcher.isDrained()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                if (!batch.isEmpty()) {
+                    sendBatch(batch);
+                }
+            }
+        }
+    }
+
+    // an URGENT notification stops the lingering, what is already queued still joins its batch
+    private void fillBatch(List<Notification> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+        int checked = 0;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            for (; checked < batch.size(); checked++) {
+                if (batch.get(checked).getPriority() == NotificationPriority.URGENT) {
+                    return;
+                }
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (batch.size() == maxBatchSize || remainingNanos <= 0) {
+                return;
+            }
+            Notification next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void sendBatch(List<Notification> batch) {
+        try {
+            batchChannel.sendBatch(batch);
+            sent.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            failed.addAndGet(batch.size());
+        }
+        batches.incrementAndGet();
+        batch.clear();
+    }
+
+    public NotificationChannel getChannel() {
+        return channel;
+    }
+
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getQueueDepth(NotificationPriority priority) {
+        return queue.getDepth(priority);
+    }
+
+    public long getAverageWaitNanos(NotificationPriority priority) {
+        return queue.getAverageWaitNanos(priority);
+    }
+
+    public long getMaxWaitNanos(NotificationPriority priority) {
+        return queue.getMaxWaitNanos(priority);
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+}
+
+// Class for notification dispatcher
+// producers put requests on a bounded ingest queue and return, resolver threads look up preferences
+// and hand the notification to the lane of every channel, each lane has its own queue and virtual thread workers
+// both stages keep one queue per priority, so URGENT work skips a LOW backlog at ingest and at every channel
+// backpressure: trySubmit returns false when ingest is full, a full lane rejects and counts only its own channel
+class NotificationDispatcher implements AutoCloseable {
+    static final long POLL_MILLIS = 50;
+
+    private final ChannelResolver resolver;
+    private final NotificationFactory notificationFactory;
+    private final PriorityLanes<DispatchRequest> ingest;
+    private final int numResolvers;
+    private final Map<NotificationChannel, ChannelLane> lanes = new HashMap<>();
+    private final List<Thread> resolverThreads = new ArrayList<>();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    // submitters hold the read lock from the closed check until their request is queued, close takes the write lock
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean started;
+    private volatile boolean closed;
+    private volatile boolean resolved;
+
+    public NotificationDispatcher(ChannelResolver resolver, NotificationFactory notificationFactory, int ingestCapacityPerPriority, int numResolvers) {
+        if (numResolvers <= 0) {
+            throw new IllegalArgumentException("Resolvers should be positive");
+        }
+        this.resolver = resolver;
+        this.notificationFactory = notificationFactory;
+        this.ingest = new PriorityLanes<>(ingestCapacityPerPriority);
+        this.numResolvers = numResolvers;
+    }
+
+    public void registerChannel(NotificationChannel channel, int queueCapacityPerPriority, int numWorkers) {
+        registerChannel(channel, queueCapacityPerPriority, numWorkers, 1, 0);
+    }
+
+    // lanes are registered before start, a batch size of 1 sends every notification on its own
+    public void registerChannel(NotificationChannel channel, int queueCapacityPerPriority, int numWorkers, int maxBatchSize, long lingerMillis) {
+        if (started) {
+            throw new IllegalStateException("Dispatcher is already started");
+        }
+        lanes.put(channel, new ChannelLane(channel, queueCapacityPerPriority, numWorkers, maxBatchSize, lingerMillis));
+    }
+
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("Dispatcher is already started");
+        }
+        if (closed) {
+            throw new IllegalStateException("Dispatcher is closed");
+        }
+        started = true;
+        for (int i = 0; i < numResolvers; i++) {
+            resolverThreads.add(Thread.ofVirtual().name("notification-resolver-" + i).start(this::resolveLoop));
+        }
+        for (ChannelLane lane : lanes.values()) {
+            for (int i = 0; i < lane.getNumWorkers(); i++) {
+                workerThreads.add(Thread.ofVirtual().name("notification-lane-" + i).start(() -> lane.drain(this)));
+            }
+        }
+    }
+
+    public boolean trySubmit(String userId, String content, NotificationType type) {
+        return trySubmit(userId, content, type, NotificationPriority.MEDIUM);
+    }
+
+    // returns at once, false when the ingest lane of this priority is full
+    public boolean trySubmit(String userId, String content, NotificationType type, NotificationPriority priority) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Dispatcher is closed");
+            }
+            return ingest.offer(new DispatchRequest(userId, content, type, priority), priority);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    // waits up to the timeout for room in the ingest lane of this priority, a close waits for it as well
+    public boolean submit(String userId, String content, NotificationType type, NotificationPriority priority, long timeout, TimeUnit unit) throws InterruptedException {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Dispatcher is closed");
+            }
+            return ingest.offer(new DispatchRequest(userId, content, type, priority), priority, timeout, unit);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    public int getIngestDepth() {
+        return ingest.size();
+    }
+
+    public int getIngestDepth(NotificationPriority priority) {
+        return ingest.getDepth(priority);
+    }
+
+    // time from submit until a resolver picked the request up
+    public long getIngestWaitNanos(NotificationPriority priority) {
+        return ingest.getAverageWaitNanos(priority);
+    }
+
+    // notifications a full lane could not take
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // requests whose channels or notification could not be built, the resolver goes on with the next one
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public ChannelLane getLane(NotificationChannel channel) {
+        return lanes.get(channel);
+    }
+
+    boolean isDrained() {
+        return resolved;
+    }
+
+    // stops taking requests, delivers what was accepted and waits for the workers
+    // an interrupt does not cut the wait short, it is kept on the calling thread once everything is delivered
+    @Override
+    public void close() {
+        boolean wasStarted;
+        // taken with start, so the threads are either all started or none of them
+        synchronized (this) {
+            closeLock.writeLock().lock();
+            try {
+                closed = true;
+            } finally {
+                closeLock.writeLock().unlock();
+            }
+            wasStarted = started;
+        }
+        boolean interrupted = joinAll(resolverThreads);
+        // a resolver that found the lane empty just before the last request came in has stopped without it
+        List<DispatchRequest> leftovers = new ArrayList<>();
+        ingest.drainTo(leftovers, Integer.MAX_VALUE);
+        for (DispatchRequest request : leftovers) {
+            dispatch(request);
+        }
+        resolved = true;
+        // a dispatcher that was never started has no lane workers, the closing thread sends what was accepted
+        if (!wasStarted) {
+            // the interrupt is put back below, a pending one would end the drain early
+            interrupted |= Thread.interrupted();
+            for (ChannelLane lane : lanes.values()) {
+                lane.drain(this);
+            }
+        }
+        interrupted |= joinAll(workerThreads);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // returns true when the calling thread was interrupted while waiting
+    private static boolean joinAll(List<Thread> threads) {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        return interrupted;
+    }
+
+    private void resolveLoop() {
+        while (true) {
+            DispatchRequest request;
+            try {
+                request = ingest.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (request == null) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+            dispatch(request);
+        }
+    }
+
+    private void dispatch(DispatchRequest request) {
+        Set<NotificationChannel> channels;
+        Notification notification;
+        try {
+            channels = resolver.resolveChannels(request.getUserId(), request.getType());
+            if (channels.isEmpty()) {
+                return;
+            }
+            notification = notificationFactory.createNotification(request.getUserId(), request.getContent(), request.getType());
+            notification.setPriority(request.getPriority());
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            return;
+        }
+        for (NotificationChannel channel : channels) {
+            ChannelLane lane = lanes.get(channel);
+            if (lane == null || !lane.offer(notification)) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+}
+
+// Broadcast fan-out:
+
+// Class for broadcast payload, one instance is shared by every recipient of a broadcast
+final class BroadcastPayload {
+    private final String id;
+    private final String content;
+    private final NotificationType type;
+    private final NotificationPriority priority;
+    private final LocalDateTime timestamp;
+
+    public BroadcastPayload(String content, NotificationType type, NotificationPriority priority) {
+        this.id = UUID.randomUUID().toString();
+        this.content = content;
+        this.type = type;
+        this.priority = priority;
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public NotificationType getType() {
+        return type;
+    }
+
+    public NotificationPriority getPriority() {
+        return priority;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+}
+
+// Class for a broadcast notification to one user, only built for channels without broadcast support
+class BroadcastNotification extends Notification {
+    public BroadcastNotification(String userId, BroadcastPayload payload) {
+        this.id = payload.getId();
+        this.userId = userId;
+        this.content = payload.getContent();
+        this.type = payload.getType();
+        this.priority = payload.getPriority();
+        this.timestamp = payload.getTimestamp();
+    }
+}
+
+// Interface for streaming recipients of a broadcast
+interface RecipientSource {
+    // copies the next recipients into the arrays, returns how many were read, 0 once every recipient was read
+    int nextChunk(String[] userIds, long[] preferenceBits);
+
+    // resolves the channel ids in the preference bits
+    ChannelRegistry getChannelRegistry();
+}
+
+// Class for broadcast result
+class BroadcastResult {
+    private final long recipients;
+    private final long optedOut;
+    private final long delivered;
+    private final long failed;
+    private final long unresolved;
+    private final RuntimeException error;
+
+    public BroadcastResult(long recipients, long optedOut, long delivered, long failed) {
+        this(recipients, optedOut, delivered, failed, 0, null);
+    }
+
+    public BroadcastResult(long recipients, long optedOut, long delivered, long failed, long unresolved, RuntimeException error) {
+        this.recipients = recipients;
+        this.optedOut = optedOut;
+        this.delivered = delivered;
+        this.failed = failed;
+        this.unresolved = unresolved;
+        this.error = error;
+    }
+
+    public long getRecipients() {
+        return recipients;
+    }
+
+    public long getOptedOut() {
+        return optedOut;
+    }
+
+    // one per user and channel
+    public long getDelivered() {
+        return delivered;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    // recipients of chunks that failed to resolve, some of them may already have been sent to
+    public long getUnresolved() {
+        return unresolved;
+    }
+
+    // first failure while resolving a chunk, later ones are suppressed on it, null when every chunk resolved
+    public RuntimeException getError() {
+        return error;
+    }
+}
+
+// Class for broadcast engine
+// the caller streams the recipient source in chunks into a small bounded queue, one worker per core resolves
+// preferences and collects user ids per channel, a full batch goes out as one sendBroadcast with the shared payload
+// chunks are recycled and batches are sized up front, so memory does not grow with the number of users
+class BroadcastEngine {
+    private final int chunkSize;
+    private final int maxBatchSize;
+    private final int numWorkers;
+
+    public BroadcastEngine(int chunkSize, int maxBatchSize) {
+        this(chunkSize, maxBatchSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BroadcastEngine(int chunkSize, int maxBatchSize, int numWorkers) {
+        if (chunkSize <= 0 || maxBatchSize <= 0 || numWorkers <= 0) {
+            throw new IllegalArgumentException("Chunk size, batch size and workers should be positive");
+        }
+        this.chunkSize = chunkSize;
+        this.maxBatchSize = maxBatchSize;
+        this.numWorkers = numWorkers;
+    }
+
+    private static class RecipientChunk {
+        private final String[] userIds;
+        private final long[] preferenceBits;
+        private int size;
+
+        private RecipientChunk(int chunkSize) {
+            userIds = new String[chunkSize];
+            preferenceBits = new long[chunkSize];
+        }
+    }
+
+    public BroadcastResult broadcast(BroadcastPayload payload, RecipientSource source) throws InterruptedException {
+        // two chunks per worker keep every worker busy while the caller reads the next one
+        int numChunks = numWorkers * 2;
+        BlockingQueue<RecipientChunk> filled = new ArrayBlockingQueue<>(numChunks + numWorkers);
+        BlockingQueue<RecipientChunk> free = new ArrayBlockingQueue<>(numChunks);
+        for (int i = 0; i < numChunks; i++) {
+            free.add(new RecipientChunk(chunkSize));
+        }
+        // an empty chunk tells a worker to flush and stop
+        RecipientChunk end = new RecipientChunk(0);
+
+        AtomicLong recipients = new AtomicLong();
+        AtomicLong optedOut = new AtomicLong();
+        AtomicLong delivered = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong unresolved = new AtomicLong();
+        AtomicReference<RuntimeException> error = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < numWorkers; i++) {
+            workers.add(Thread.ofPlatform().name("broadcast-worker-" + i).start(() -> {
+                ChannelBatch[] batches = new ChannelBatch[ChannelRegistry.MAX_CHANNELS];
+                try {
+                    while (true) {
+                        RecipientChunk chunk = filled.take();
+                        if (chunk == end) {
+                            break;
+                        }
+                        // a failing chunk must still go back to the free queue, the caller waits on it for the next one
+                        try {
+                            fanOut(payload, chunk, source.getChannelRegistry(), batches, optedOut);
+                        } catch (RuntimeException e) {
+                            unresolved.addAndGet(chunk.size);
+                            if (!error.compareAndSet(null, e)) {
+                                error.get().addSuppressed(e);
+                            }
+                        } finally {
+                            recipients.addAndGet(chunk.size);
+                            free.add(chunk);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (ChannelBatch batch : batches) {
+                    if (batch == null) {
+                        continue;
+                    }
+                    batch.flush(payload);
+                    delivered.addAndGet(batch.delivered);
+                    failed.addAndGet(batch.failed);
+                }
+            }));
+        }
+
+        try {
+            while (true) {
+                RecipientChunk chunk = free.take();
+                chunk.size = source.nextChunk(chunk.userIds, chunk.preferenceBits);
+                if (chunk.size == 0) {
+                    break;
+                }
+                filled.put(chunk);
+            }
+        } finally {
+            for (int i = 0; i < numWorkers; i++) {
+                filled.put(end);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        return new BroadcastResult(recipients.get(), optedOut.get(), delivered.get(), failed.get(), unresolved.get(), error.get());
+    }
+
+    // batches are indexed by channel id, so a recipient costs a few bit operations and no lookups
+    private void fanOut(BroadcastPayload payload, RecipientChunk chunk, ChannelRegistry channelRegistry, ChannelBatch[] batches, AtomicLong optedOut) {
+        NotificationType type = payload.getType();
+        long skipped = 0;
+        for (int i = 0; i < chunk.size; i++) {
+            long userBits = chunk.preferenceBits[i];
+            if (PreferenceBits.isOptedOut(userBits, type)) {
+                skipped++;
+                continue;
+            }
+            for (int mask = PreferenceBits.getChannelMask(userBits, type); mask != 0; mask &= mask - 1) {
+                int channelId = Integer.numberOfTrailingZeros(mask);
+                if (batches[channelId] == null) {
+                    batches[channelId] = new ChannelBatch(channelRegistry.getChannel(channelId));
+                }
+                batches[channelId].add(chunk.userIds[i], payload);
+            }
+        }
+        optedOut.addAndGet(skipped);
+    }
+
+    // user ids of one worker for one channel
+    private class ChannelBatch {
+        private final BatchNotificationChannel channel;
+        private final String[] userIds = new String[maxBatchSize];
+        private int size;
+        private long delivered;
+        private long failed;
+
+        private ChannelBatch(NotificationChannel channel) {
+            this.channel = BatchNotificationChannel.of(channel);
+        }
+
+        private void add(String userId, BroadcastPayload payload) {
+            userIds[size++] = userId;
+            if (size == maxBatchSize) {
+                flush(payload);
+            }
+        }
+
+        private void flush(BroadcastPayload payload) {
+            if (size == 0) {
+                return;
+            }
+            try {
+                channel.sendBroadcast(payload, Arrays.asList(userIds).subList(0, size));
+                delivered += size;
+            } catch (RuntimeException e) {
+                failed += size;
+            }
+            Arrays.fill(userIds, 0, size, null);
+            size = 0;
+        }
+    }
+}
+
+// Class for a local stub provider
+// every call costs a fixed round trip plus a little per notification, like a bulk email or SMS api
+class StubBulkProvider implements BatchNotificationChannel {
+    private final long callNanos;
+    private final long perNotificationNanos;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    public StubBulkProvider(long callNanos, long perNotificationNanos) {
+        this.callNanos = callNanos;
+        this.perNotificationNanos = perNotificationNanos;
+    }
+
+    @Override
+    public void sendBatch(List<Notification> notifications) {
+        LockSupport.parkNanos(callNanos + perNotificationNanos * notifications.size());
+        calls.incrementAndGet();
+        delivered.addAndGet(notifications.size());
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+}
+
+// Class for batch channel acceptance check
+// offers 100k notifications a second to a provider with 200us per call, once through the single send adapter
+// and once in batches, single sends cap out near workers / call time while batches keep up with the offered rate
+class BatchChannelAcceptanceTest {
+    private static final int OFFERED_PER_SECOND = 100_000;
+    private static final int SECONDS = 2;
+    private static final int WORKERS = 4;
+
+    public static void main(String[] args) throws InterruptedException {
+        double singleRate = run("single send", 1, 0);
+        double batchRate = run("batched", 500, 5);
+        System.out.printf("Batching speedup %.1fx%n", batchRate / singleRate);
+        if (batchRate < OFFERED_PER_SECOND * 0.95) {
+            throw new IllegalStateException("Batched channel kept up with only " + (long) batchRate + " notifications a second");
+        }
+        if (batchRate < singleRate * 3) {
+            throw new IllegalStateException("Batching did not raise throughput over single sends");
+        }
+    }
+
+    private static double run(String name, int maxBatchSize, long lingerMillis) throws InterruptedException {
+        StubBulkProvider provider = new StubBulkProvider(200_000, 100);
+        // a plain lambda has no sendBatch, so batch size 1 goes through the adapter one call per notification
+        NotificationChannel channel = maxBatchSize == 1 ? provider::send : provider;
+        Set<NotificationChannel> channels = Set.of(channel);
+        // content is not looked at by the stub provider
+        NotificationDispatcher dispatcher = new NotificationDispatcher((userId, type) -> channels, (userId, content, type) -> new MessageNotification(), 50_000, 2);
+        dispatcher.registerChannel(channel, 50_000, WORKERS, maxBatchSize, lingerMillis);
+        dispatcher.start();
+
+        long rejected = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(SECONDS);
+        long submitted = 0;
+        // paced in 1ms steps so the provider sees a steady offered rate
+        for (long now = start; now < end; now = System.nanoTime()) {
+            long due = (now - start) * OFFERED_PER_SECOND / 1_000_000_000L;
+            for (; submitted < due; submitted++) {
+                if (!dispatcher.trySubmit("user-" + submitted, "content", NotificationType.MESSAGE, NotificationPriority.LOW)) {
+                    rejected++;
+                }
+            }
+            LockSupport.parkNanos(1_000_000);
+        }
+        long delivered = provider.getDelivered();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        dispatcher.close();
+
+        ChannelLane lane = dispatcher.getLane(channel);
+        double rate = delivered / elapsedSeconds;
+        System.out.printf("%s: offered %d, delivered in window %d (%.0f/s), provider calls %d, rejected at ingest %d, dropped at lane %d, LOW wait avg %.1f ms%n",
+                name, submitted, delivered, rate, provider.getCalls(), rejected, dispatcher.getDropped(),
+                lane.getAverageWaitNanos(NotificationPriority.LOW) / 1e6);
+        return rate;
+    }
+}
+
 /**
  *
  *
@@ -191,8 +1527,8 @@ class NotificationBuilder {
  * |NotificationService|         |NotificationPreference|
  * +-------------------+         +----------------------+
  * |-users: Map        |         |-userId: String      |
- * |-preferences: Map  |    +--->|-channelPrefs: Map   |
- * |-channels: List    |         |-optOutPrefs: Map    |
+ * |-preferences: Store|    +--->|-bits: long          |
+ * |-channels: List    |         |-channelRegistry     |
  * +-------------------+         +----------------------+
  * |+sendNotification()|         |+addChannelPreference()|
  * |+registerUser()    |         |+optOut()             |
@@ -1,3 +1,52 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
 // Enum of vehicle type
 enum VehicleType {
     CAR, BIKE, OTHER;
@@ -32,40 +81,139 @@ abstract class Vehicle {
     }
 
     public int calculateFee(VehicleType type, int duration, DurationType durationType) {
-        feeStrategy.calculateFee(type, duration, durationType);
+        return feeStrategy.calculateFee(type, duration, durationType);
     }
 }
 
 // Class for car vehicle
-class CarVehicle {
+class CarVehicle extends Vehicle {
     public CarVehicle(String licencePlate, VehicleType type, ParkingFeeStrategy feeStrategy) {
-        super(licencePlate, type, feeStrategy)
+        super(licencePlate, type, feeStrategy);
     }
 }
 
 // Class  for bike vehicle
-class BikeVehicle {
+class BikeVehicle extends Vehicle {
     public BikeVehicle(String licencePlate, VehicleType type, ParkingFeeStrategy feeStrategy) {
-        super(licencePlate, type, feeStrategy)
+        super(licencePlate, type, feeStrategy);
     }
 }
 
 // Class for other vehicle
-class OtherVehicle {
+class OtherVehicle extends Vehicle {
     public OtherVehicle(String licencePlate, VehicleType type, ParkingFeeStrategy feeStrategy) {
-        super(licencePlate, type, feeStrategy)
+        super(licencePlate, type, feeStrategy);
+    }
+}
+
+// Class for a vehicle recovered from the parking state
+// only its spots are known, it takes the spot type and stands in until a ticket attaches the real vehicle
+class RecoveredVehicle extends Vehicle {
+    public RecoveredVehicle(VehicleType spotType) {
+        super(null, spotType, null);
     }
 }
 
+// Interface for vehicle constructor
+interface VehicleConstructor {
+    public Vehicle create(String licencePlate, VehicleType type, ParkingFeeStrategy feeStrategy);
+}
+
 // Class for vehicle factory
 class VehicleFactory {
+    private final Map<VehicleType, VehicleConstructor> constructors = new EnumMap<>(VehicleType.class);
+
+    public VehicleFactory() {
+        constructors.put(VehicleType.CAR, CarVehicle::new);
+        constructors.put(VehicleType.BIKE, BikeVehicle::new);
+        constructors.put(VehicleType.OTHER, OtherVehicle::new);
+    }
 
     public Vehicle createVehicle(String licencePlate, VehicleType type, ParkingFeeStrategy feeStrategy) {
-        switch (type.toLowercase()) {
-            "car": return new CarVehicle(licencePlate, type, feeStrategy);
-            "bike": return new BikeVehicle(licencePlate, type, feeStrategy);
-            default: return new OtherVehicle(licencePlate, type, feeStrategy);
+        return constructors.get(type).create(licencePlate, type, feeStrategy);
+    }
+}
+
+// Class for vehicle compatibility
+// which vehicle types may use which spot types, as one bit per vehicle type in a mask per spot type
+// a vehicle tries its spot types in order: its own type first, then the overflow types it was allowed,
+// an oversized vehicle can be allowed on a number of adjacent spots of a type
+// rules are immutable, every allow returns new rules
+class VehicleCompatibility {
+    private static final VehicleCompatibility STANDARD = new VehicleCompatibility();
+
+    private final int[] allowedVehicleMasks;
+    private final int[][] spotsNeeded;
+    private final Map<VehicleType, List<VehicleType>> spotTypesInOrder;
+
+    private VehicleCompatibility() {
+        int numTypes = VehicleType.values().length;
+        this.allowedVehicleMasks = new int[numTypes];
+        this.spotsNeeded = new int[numTypes][numTypes];
+        this.spotTypesInOrder = new EnumMap<>(VehicleType.class);
+        for(VehicleType type : VehicleType.values()) {
+            allowedVehicleMasks[type.ordinal()] = 1 << type.ordinal();
+            spotsNeeded[type.ordinal()][type.ordinal()] = 1;
+            spotTypesInOrder.put(type, List.of(type));
+        }
+    }
+
+    private VehicleCompatibility(VehicleCompatibility rules) {
+        this.allowedVehicleMasks = rules.allowedVehicleMasks.clone();
+        this.spotsNeeded = new int[rules.spotsNeeded.length][];
+        for(int i = 0; i < spotsNeeded.length; i++) {
+            this.spotsNeeded[i] = rules.spotsNeeded[i].clone();
+        }
+        this.spotTypesInOrder = new EnumMap<>(rules.spotTypesInOrder);
+    }
+
+    // every vehicle type parks on its own spot type only
+    public static VehicleCompatibility standard() {
+        return STANDARD;
+    }
+
+    // the vehicle may take a spot of spotType when no spot of the types before it is free
+    public VehicleCompatibility allowOverflow(VehicleType vehicleType, VehicleType spotType) {
+        return allowAdjacent(vehicleType, spotType, 1);
+    }
+
+    // the vehicle takes that many adjacent spots of spotType, adjacent meaning next to each other in the floor's spot list
+    public VehicleCompatibility allowAdjacent(VehicleType vehicleType, VehicleType spotType, int spots) {
+        if(spots < 1 || spots > 63) {
+            throw new IllegalArgumentException("A vehicle can take 1 to 63 adjacent spots");
+        }
+        if(spotTypesInOrder.get(vehicleType).contains(spotType)) {
+            throw new IllegalArgumentException("Vehicle " + vehicleType + " can already use " + spotType + " spots");
+        }
+        VehicleCompatibility rules = new VehicleCompatibility(this);
+        rules.allowedVehicleMasks[spotType.ordinal()] |= 1 << vehicleType.ordinal();
+        rules.spotsNeeded[vehicleType.ordinal()][spotType.ordinal()] = spots;
+        List<VehicleType> order = new ArrayList<>(spotTypesInOrder.get(vehicleType));
+        order.add(spotType);
+        rules.spotTypesInOrder.put(vehicleType, Collections.unmodifiableList(order));
+        return rules;
+    }
+
+    public boolean canPark(VehicleType spotType, VehicleType vehicleType) {
+        return (allowedVehicleMasks[spotType.ordinal()] & (1 << vehicleType.ordinal())) != 0;
+    }
+
+    public EnumSet<VehicleType> getAllowedVehicleTypes(VehicleType spotType) {
+        EnumSet<VehicleType> types = EnumSet.noneOf(VehicleType.class);
+        for(VehicleType type : VehicleType.values()) {
+            if(canPark(spotType, type)) {
+                types.add(type);
+            }
         }
+        return types;
+    }
+
+    public List<VehicleType> getSpotTypes(VehicleType vehicleType) {
+        return spotTypesInOrder.get(vehicleType);
+    }
+
+    public int getSpotsNeeded(VehicleType vehicleType, VehicleType spotType) {
+        return spotsNeeded[vehicleType.ordinal()][spotType.ordinal()];
     }
 }
 
@@ -77,313 +225,3230 @@ enum DurationType {
 // Class for parking fee strategy
 interface ParkingFeeStrategy {
     public int calculateFee(VehicleType type, int duration, DurationType durationType);
+
+    // entry hour is the hour of day the stay started, strategies without time of day pricing ignore it
+    public default int calculateFee(VehicleType type, int entryHour, int duration, DurationType durationType) {
+        return calculateFee(type, duration, durationType);
+    }
 }
 
-// Class for basic parking fee strategy
-class BasicParkingFeeStrategy implements ParkingFeeStrategy {
-    @Override
-    public int calculateFee(VehicleType type, int duration, DurationType durationType) {
-        switch (type.toLowercase()) {
-            case "car": durationType == DurationType.HOURLY ? duration * 10 : duration * 10 * 24;
-            case "bike": durationType == DurationType.HOURLY ? duration * 5 : duration * 5 * 24;
-            default: durationType == DurationType.HOURLY ? duration * 8 : duration * 8 * 24;
+// Class for fee rate table
+// hourly rates are set per vehicle type and tier, a tier starts at an hour of the stay and runs to the next tier
+// time of day percentages scale the rate of every hour that falls in them
+class FeeRateTable {
+    private final int[] tierStartHours;
+    private final int[][] hourlyRates;
+    private final int[] dailyRates;
+    private final int[] timeOfDayPercents;
+
+    public FeeRateTable() {
+        this(0);
+    }
+
+    public FeeRateTable(int... tierStartHours) {
+        if(tierStartHours.length == 0 || tierStartHours[0] != 0) {
+            throw new IllegalArgumentException("First tier should start at hour 0");
+        }
+        for(int tier = 1; tier < tierStartHours.length; tier++) {
+            if(tierStartHours[tier] <= tierStartHours[tier - 1]) {
+                throw new IllegalArgumentException("Tiers should start at increasing hours");
+            }
         }
+        this.tierStartHours = tierStartHours.clone();
+        this.hourlyRates = new int[VehicleType.values().length][tierStartHours.length];
+        this.dailyRates = new int[VehicleType.values().length];
+        this.timeOfDayPercents = new int[24];
+        Arrays.fill(this.timeOfDayPercents, 100);
     }
-}
 
-// Class for preminum parking fee strategy
-class PremiumParkingFeeStrategy implements ParkingFeeStrategy {
-    @Override
-    public int calculateFee(VehicleType type, int duration, DurationType durationType) {
-        switch (type.toLowercase()) {
-            case "car": durationType == DurationType.HOURLY ? duration * 12 : duration * 12 * 24;
-            case "bike": durationType == DurationType.HOURLY ? duration * 8 : duration * 8 * 24;
-            default: durationType == DurationType.HOURLY ? duration * 9 : duration * 9 * 24;
+    // one rate per tier
+    public FeeRateTable setHourlyRates(VehicleType type, int... rates) {
+        if(rates.length != tierStartHours.length) {
+            throw new IllegalArgumentException("Expected " + tierStartHours.length + " tier rates for vehicle " + type);
         }
+        hourlyRates[type.ordinal()] = rates.clone();
+        return this;
     }
-}
 
-// Interface for payment strategy
-interface PaymentStrategy {
-    public void processPayment(int amount);
-}
+    public FeeRateTable setDailyRate(VehicleType type, int rate) {
+        dailyRates[type.ordinal()] = rate;
+        return this;
+    }
 
-// Class for cash payment strategy
-class CashPaymentSrategy implements PaymentStrategy {
-    @Override
-    public void processPayment(int amount) {
-        System.out.println("Cash processing... ")
+    // hours from fromHour up to toHour (exclusive) of the day are charged at percent of the tier rate, wraps past midnight
+    public FeeRateTable setTimeOfDayPercent(int fromHour, int toHour, int percent) {
+        for(int hour = fromHour; hour != toHour; hour = (hour + 1) % 24) {
+            timeOfDayPercents[hour] = percent;
+        }
+        return this;
     }
-}
 
-// Class for debit card payment strategy
-class DebitCardPaymentSrategy implements PaymentStrategy {
-    @Override
-    public void processPayment(int amount) {
-        System.out.println("Debit Card processing... ")
+    public int[] getTierStartHours() {
+        return tierStartHours.clone();
     }
-}
 
-class Payment {
-    private int amount;
-    private PaymentStrategy paymentStrategy;
+    public int getHourlyRate(VehicleType type, int tier) {
+        return hourlyRates[type.ordinal()][tier];
+    }
 
-    public Payment(int amount, PaymentStrategy paymentStrategy) {
-        this.amount = amount;
-        this.paymentStrategy = paymentStrategy;
+    public int getDailyRate(VehicleType type) {
+        return dailyRates[type.ordinal()];
     }
 
-    public void processPayment() {
-        paymentStrategy.processPayment(this.amount);
+    public int getTimeOfDayPercent(int hour) {
+        return timeOfDayPercents[hour];
     }
 }
 
-// Abstract class for ParkingSpot
-abstract class ParkingSpot {
-    private int spotNumber;
-    private VehicleType spotType;
-    private boolean isOccupied;
-    private Vehicle vehicle;
-
-    public ParkingSpot(int spotNumber, VehicleType spotType) {
-        this.spotNumber = spotNumber;
-        this.spotType = spotType;
-        this.isOccupied = false;
+// Class for table parking fee strategy
+// every hourly fee is a lookup in a precomputed table of cumulative fees by vehicle type, entry hour and hours stayed
+// after the last tier starts every 24 hours cost the same, so the table stops one day later and longer stays add full days
+class TableParkingFeeStrategy implements ParkingFeeStrategy {
+    private static final int HOURS_PER_DAY = 24;
+
+    private final int periodStart;
+    private final int rowWidth;
+    private final int[] cumulativeFees;
+    private final int[] fullDayFees;
+    private final int[] dailyRates;
+
+    public TableParkingFeeStrategy(FeeRateTable rateTable) {
+        int[] tierStartHours = rateTable.getTierStartHours();
+        int numTypes = VehicleType.values().length;
+        this.periodStart = tierStartHours[tierStartHours.length - 1];
+        this.rowWidth = periodStart + HOURS_PER_DAY;
+        this.cumulativeFees = new int[numTypes * HOURS_PER_DAY * rowWidth];
+        this.fullDayFees = new int[numTypes];
+        this.dailyRates = new int[numTypes];
+
+        for(VehicleType type : VehicleType.values()) {
+            int t = type.ordinal();
+            dailyRates[t] = rateTable.getDailyRate(type);
+            for(int entryHour = 0; entryHour < HOURS_PER_DAY; entryHour++) {
+                int row = (t * HOURS_PER_DAY + entryHour) * rowWidth;
+                int tier = 0;
+                for(int hour = 1; hour < rowWidth; hour++) {
+                    while(tier + 1 < tierStartHours.length && tierStartHours[tier + 1] <= hour - 1) {
+                        tier++;
+                    }
+                    cumulativeFees[row + hour] = cumulativeFees[row + hour - 1]
+                            + hourFee(rateTable.getHourlyRate(type, tier), rateTable.getTimeOfDayPercent((entryHour + hour - 1) % HOURS_PER_DAY));
+                }
+            }
+            int lastRate = rateTable.getHourlyRate(type, tierStartHours.length - 1);
+            for(int hour = 0; hour < HOURS_PER_DAY; hour++) {
+                fullDayFees[t] += hourFee(lastRate, rateTable.getTimeOfDayPercent(hour));
+            }
+        }
     }
 
-    public int getSpotNumber() {
-        return spotNumber;
+    @Override
+    public int calculateFee(VehicleType type, int duration, DurationType durationType) {
+        return calculateFee(type, 0, duration, durationType);
     }
 
-    public void setSpotNumber(int spotNumber) {
-        this.spotNumber = spotNumber;
+    @Override
+    public int calculateFee(VehicleType type, int entryHour, int duration, DurationType durationType) {
+        if(durationType == DurationType.DAILY) {
+            return dailyRates[type.ordinal()] * duration;
+        }
+        return hourlyFee(type.ordinal(), entryHour, duration);
     }
 
-    public VehicleType getSpotType() {
-        return spotType;
+    // prices every ticket of the batch in one pass over its arrays, returns the total
+    public long settle(FeeSettlementBatch batch) {
+        byte[] types = batch.getTypeOrdinals();
+        byte[] entryHours = batch.getEntryHours();
+        int[] hours = batch.getHours();
+        int[] fees = batch.getFees();
+        long total = 0;
+        for(int i = 0; i < batch.size(); i++) {
+            fees[i] = hourlyFee(types[i], entryHours[i], hours[i]);
+            total += fees[i];
+        }
+        return total;
     }
 
-    public void setSpotType(VehicleType spotType) {
-        this.spotType = spotType;
+    private int hourlyFee(int typeOrdinal, int entryHour, int hours) {
+        int extraDays = Math.max(0, hours - periodStart) / HOURS_PER_DAY;
+        int row = (typeOrdinal * HOURS_PER_DAY + entryHour) * rowWidth;
+        return cumulativeFees[row + hours - extraDays * HOURS_PER_DAY] + extraDays * fullDayFees[typeOrdinal];
     }
 
-    public boolean isOccupied() {
-        return isOccupied;
+    private static int hourFee(int rate, int percent) {
+        return (rate * percent + 50) / 100;
     }
+}
 
-    public void setOccupied(boolean occupied) {
-        isOccupied = occupied;
+// Class for fee settlement batch
+// closed tickets kept as columns, so pricing millions of them at end of day walks a few flat arrays
+class FeeSettlementBatch {
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+
+    private byte[] typeOrdinals;
+    private byte[] entryHours;
+    private int[] hours;
+    private int[] fees;
+    private int size;
+
+    public FeeSettlementBatch(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        this.typeOrdinals = new byte[capacity];
+        this.entryHours = new byte[capacity];
+        this.hours = new int[capacity];
+        this.fees = new int[capacity];
     }
 
-    public Vehicle getVehicle() {
-        return vehicle;
+    public void add(ParkingTicket ticket) {
+        add(ticket.getVehicleType(), ticket.getEntryTime(), ticket.getExitTime());
     }
 
-    public void setVehicle(Vehicle vehicle) {
-        this.vehicle = vehicle;
+    // started hours are charged with at least one hour, hour of day is taken in utc
+    public void add(VehicleType type, long entryTime, long exitTime) {
+        if(size == hours.length) {
+            int capacity = size * 2;
+            typeOrdinals = Arrays.copyOf(typeOrdinals, capacity);
+            entryHours = Arrays.copyOf(entryHours, capacity);
+            hours = Arrays.copyOf(hours, capacity);
+            fees = Arrays.copyOf(fees, capacity);
+        }
+        typeOrdinals[size] = (byte) type.ordinal();
+        entryHours[size] = (byte) ((entryTime / MILLIS_PER_HOUR) % 24);
+        hours[size] = (int) Math.max(1, (exitTime - entryTime + MILLIS_PER_HOUR - 1) / MILLIS_PER_HOUR);
+        size++;
     }
 
-    public abstract boolean canParkVehicle(Vehicle vehicle);
+    public int size() {
+        return size;
+    }
 
-    public ParkingSpot parkVehicle(Vehicle vehicle) {
-        if(this.isOccupied) {
-            throw new IllegalStateException("Parking spot is already occupied");
-        }
-        if(!this.canParkVehicle(vehicle)) {
-            throw new IllegalStateException("Parking spot "+ this.spotType + " is not suitable for vehicle "+ vehicle.getType());
-        }
-        this.vehicle = vehicle;
-        this.isOccupied = true;
+    public void clear() {
+        size = 0;
+    }
 
-        return this;
+    public int getFee(int index) {
+        return fees[index];
     }
 
-    public ParkingSpot vacate() {
-        if(!this.isOccupied) {
-            throw new IllegalStateException("Spot is already empty");
-        }
-        this.vehicle = null;
-        this.isOccupied = false;
+    byte[] getTypeOrdinals() {
+        return typeOrdinals;
+    }
 
-        return this;
+    byte[] getEntryHours() {
+        return entryHours;
     }
-}
 
-// Class for car parking spot
-class CarParkingSpot extends ParkingSpot {
-    CarParkingSpot(int spotNumber) {
-        super(spotNumber, VehicleType.CAR);
+    int[] getHours() {
+        return hours;
     }
 
-    public boolean canParkVehicle(Vehicle vehicle) {
-        return "car".equals(vehicle.getType().toLowercase());
+    int[] getFees() {
+        return fees;
     }
 }
 
-// Class for bike parking spot
-class BikeParkingSpot extends ParkingSpot {
-    BikeParkingSpot(int spotNumber) {
-        super(spotNumber, VehicleType.BIKE);
+// Class for basic parking fee strategy
+class BasicParkingFeeStrategy extends TableParkingFeeStrategy {
+    public BasicParkingFeeStrategy() {
+        super(new FeeRateTable()
+                .setHourlyRates(VehicleType.CAR, 10).setDailyRate(VehicleType.CAR, 10 * 24)
+                .setHourlyRates(VehicleType.BIKE, 5).setDailyRate(VehicleType.BIKE, 5 * 24)
+                .setHourlyRates(VehicleType.OTHER, 8).setDailyRate(VehicleType.OTHER, 8 * 24));
     }
+}
 
-    public boolean canParkVehicle(Vehicle vehicle) {
-        return "bike".equals(vehicle.getType().toLowercase());
+// Class for preminum parking fee strategy
+class PremiumParkingFeeStrategy extends TableParkingFeeStrategy {
+    public PremiumParkingFeeStrategy() {
+        super(new FeeRateTable()
+                .setHourlyRates(VehicleType.CAR, 12).setDailyRate(VehicleType.CAR, 12 * 24)
+                .setHourlyRates(VehicleType.BIKE, 8).setDailyRate(VehicleType.BIKE, 8 * 24)
+                .setHourlyRates(VehicleType.OTHER, 9).setDailyRate(VehicleType.OTHER, 9 * 24));
     }
 }
 
-// Class for other parking spot
-class OtherParkingSpot extends ParkingSpot {
-    OtherParkingSpot(int spotNumber) {
-        super(spotNumber, VehicleType.OTHER);
-    }
+// Enum for payment status
+// a card payment is pending approved once the processor accepted the authorization, the barrier opens then
+// and the processor captures the amount later
+enum PaymentStatus {
+    APPROVED, PENDING_APPROVED, DECLINED, FAILED;
 
-    public boolean canParkVehicle(Vehicle vehicle) {
-        return "other".equals(vehicle.getType().toLowercase());
+    public boolean opensBarrier() {
+        return this == APPROVED || this == PENDING_APPROVED;
     }
 }
 
-// Class for ParkingLot
-class ParkingLot {
-    private List<ParkingSpot> spots;
+// Interface for payment strategy
+interface PaymentStrategy {
+    public void processPayment(int amount);
 
-    public ParkingLot(List<ParkingSpot> spots) {
-        this.spots = spots;
+    // strategies that pay on the spot complete right away
+    public default CompletableFuture<PaymentStatus> processPaymentAsync(int amount) {
+        processPayment(amount);
+        return CompletableFuture.completedFuture(PaymentStatus.APPROVED);
     }
 
-    public List<ParkingSpot> getSpots() {
-        return spots;
+    // every attempt of one payment passes the same key, a processor that already saw the key does not charge again
+    public default CompletableFuture<PaymentStatus> processPaymentAsync(int amount, String idempotencyKey) {
+        return processPaymentAsync(amount);
     }
 
-    public ParkingSpot getSpot(int spotNumber) {
-        for(ParkingSpot spot : this.spots) {
-            if(spot.getSpotNumber() == spotNumber)
-                return spot;
-        }
-        return null;
+    // withdraws an attempt that has not reached the processor yet, false when it may already have been sent
+    public default boolean cancel(String idempotencyKey) {
+        return false;
     }
 
-    public ParkingSpot parkVehicle(int spotNumber, Vehicle vehicle) {
-        try {
-            ParkingSpot spot = this.getSpot(spotNumber);
-            if(spot != null) {
-                spot = spot.parkVehicle(vehicle);
-            } else {
-                System.out.println("Spot not found")
-            }
-            return spot;
-        } catch (IllegalStateException e) {
-            throw new IllegalStateException(e.getMessage());
-        } catch (Exception e) {
-            throw new InternalServerException(e.getMessage());
-        }
+    // time a single attempt may take before it is retried
+    public default long getTimeoutMillis() {
+        return 1000;
     }
 
-    public ParkingSpot vacate(int spotNumber) {
-        try {
-            ParkingSpot spot = this.getSpot(spotNumber);
-            if(spot != null) {
-                spot = spot.vacate();
-            } else {
-                System.out.println("Spot not found")
-            }
-            return spot;
-        } catch (IllegalStateException e) {
-            throw new IllegalStateException(e.getMessage());
-        } catch (Exception e) {
-            throw new InternalServerException(e.getMessage());
-        }
+    public default int getMaxAttempts() {
+        return 1;
+    }
+
+    public default String getName() {
+        return getClass().getSimpleName();
     }
 }
 
+// Class for cash payment strategy
+class CashPaymentSrategy implements PaymentStrategy {
+    @Override
+    public void processPayment(int amount) {
+        System.out.println("Cash processing... ");
+    }
+}
 
-// Option1 Extensibility: for supporting multiple floors, we can leverage spotNumber and make it unique in complete parking lot system
-// Option2 Extensibility: for supporting multiple floors, we can introlduce parking floors class and restructure as following code
+// Class for debit card payment strategy
+class DebitCardPaymentSrategy implements PaymentStrategy {
+    private final CardAuthorizationBatcher authorizations;
 
-class ParkingFloor {
-    private int floorNumber;
-    private List<ParkingSpot> spots;
+    public DebitCardPaymentSrategy(CardAuthorizationBatcher authorizations) {
+        this.authorizations = authorizations;
+    }
 
-    public ParkingFloor(int floorNumber, List<ParkingSpot> spots) {
-        this.floorNumber = floorNumber;
-        this.spots = spots;
+    @Override
+    public void processPayment(int amount) {
+        System.out.println("Debit Card processing... ");
+        processPaymentAsync(amount).join();
     }
 
-    public int getFloorNumber() {
-        return floorNumber;
+    @Override
+    public CompletableFuture<PaymentStatus> processPaymentAsync(int amount) {
+        return authorizations.authorize(amount);
     }
 
-    public void setFloorNumber(int floorNumber) {
-        this.floorNumber = floorNumber;
+    @Override
+    public CompletableFuture<PaymentStatus> processPaymentAsync(int amount, String idempotencyKey) {
+        return authorizations.authorize(amount, idempotencyKey);
     }
 
-    public List<ParkingSpot> getSpots() {
-        return spots;
+    @Override
+    public boolean cancel(String idempotencyKey) {
+        return authorizations.cancel(idempotencyKey);
     }
 
-    public void setSpots(List<ParkingSpot> spots) {
-        this.spots = spots;
+    @Override
+    public long getTimeoutMillis() {
+        return 2000;
     }
 
-    public ParkingSpot getSpot(int spotNumber) {
-        for(ParkingSpot spot : spots) {
-            if(spot.getSpotNumber() == spotNumber)
-                return spot;
-        }
-        return null;
+    @Override
+    public int getMaxAttempts() {
+        return 3;
     }
 }
 
-// Class for ParkingLot with multifloorSupport
-class ParkingLot {
-    private List<ParkingFloor> parkingFloors;
+class Payment {
+    private int amount;
+    private PaymentStrategy paymentStrategy;
+    private final String idempotencyKey;
 
-    public ParkingLot(List<ParkingFloor> parkingFloors) {
-        this.parkingFloors = parkingFloors;
+    public Payment(int amount, PaymentStrategy paymentStrategy) {
+        this.amount = amount;
+        this.paymentStrategy = paymentStrategy;
+        this.idempotencyKey = UUID.randomUUID().toString();
     }
 
-    public List<ParkingFloor> getParkingFloors() {
-        return parkingFloors;
+    public int getAmount() {
+        return amount;
     }
 
-    public ParkingSpot getSpot(int floorNumber, int spotNumber) {
-        for(ParkingFloor floor : this.parkingFloors) {
-            if(floor.getFloorNumber() == floorNumber)
-                return floor.getSpot(spotNumber);
-        }
-        return null;
+    // the same for every attempt of this payment
+    public String getIdempotencyKey() {
+        return idempotencyKey;
     }
 
-    public ParkingSpot parkVehicle(int floorNumber, int spotNumber, Vehicle vehicle) {
-        try {
-            ParkingSpot spot = this.getSpot(floorNumber, spotNumber);
-            if(spot != null) {
-                spot = spot.parkVehicle(vehicle);
-            } else {
-                System.out.println("Spot not found")
-            }
-            return spot;
-        } catch (IllegalStateException e) {
-            throw new IllegalStateException(e.getMessage());
-        } catch (Exception e) {
-            throw new InternalServerException(e.getMessage());
-        }
+    public PaymentStrategy getPaymentStrategy() {
+        return paymentStrategy;
     }
 
-    public ParkingSpot vacate(int floorNumber, int spotNumber) {
-        try {
-            ParkingSpot spot = this.getSpot(spotNumber);
-            if(spot != null) {
-                spot = spot.vacate();
-            } else {
-                System.out.println("Spot not found")
-            }
-            return spot;
-        } catch (IllegalStateException e) {
-            throw new IllegalStateException(e.getMessage());
-        } catch (Exception e) {
-            throw new InternalServerException(e.getMessage());
-        }
+    public void processPayment() {
+        paymentStrategy.processPayment(this.amount);
+    }
+
+    public CompletableFuture<PaymentStatus> processPaymentAsync(PaymentPipeline pipeline) {
+        return pipeline.submit(this);
     }
 }
 
+// Interface for card processor
+// one call authorizes a whole batch, the result for amounts[i] is at index i
+// a key that was authorized before gets its earlier result back instead of a second hold
+interface CardProcessor {
+    public PaymentStatus[] authorizeBatch(String[] idempotencyKeys, int[] amounts, int count);
+}
 
+// Class for stub card processor
+// stands in for the card network locally: every batch costs a fixed round trip, large amounts are declined
+// and a share of batches fail so that timeouts and retries get exercised
+class StubCardProcessor implements CardProcessor {
+    private final long roundTripMillis;
+    private final int declineAbove;
+    private final double failureRate;
+    // a real network keeps keys for a limited window, the stub keeps them all
+    private final Map<String, PaymentStatus> authorized = new ConcurrentHashMap<>();
+
+    public StubCardProcessor(long roundTripMillis, int declineAbove, double failureRate) {
+        this.roundTripMillis = roundTripMillis;
+        this.declineAbove = declineAbove;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public PaymentStatus[] authorizeBatch(String[] idempotencyKeys, int[] amounts, int count) {
+        try {
+            Thread.sleep(roundTripMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Card processor call interrupted");
+        }
+        if(ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new IllegalStateException("Card processor is unavailable");
+        }
+        PaymentStatus[] statuses = new PaymentStatus[count];
+        for(int i = 0; i < count; i++) {
+            int amount = amounts[i];
+            statuses[i] = authorized.computeIfAbsent(idempotencyKeys[i], key -> amount > declineAbove ? PaymentStatus.DECLINED : PaymentStatus.PENDING_APPROVED);
+        }
+        return statuses;
+    }
+
+    // holds placed, one per distinct key
+    public int getAuthorizationCount() {
+        return authorized.size();
+    }
+}
+
+// Class for card authorization batcher
+// exit gates add authorizations to a queue, a dispatcher sends up to maxBatchSize of them in one processor call
+// it waits at most lingerMillis for a batch to fill, and several batches can be with the processor at the same time
+class CardAuthorizationBatcher implements Closeable {
+    private static final long POLL_MILLIS = 100;
+
+    private static class AuthorizationRequest {
+        private final int amount;
+        private final String idempotencyKey;
+        private final CompletableFuture<PaymentStatus> result = new CompletableFuture<>();
+
+        private AuthorizationRequest(int amount, String idempotencyKey) {
+            this.amount = amount;
+            this.idempotencyKey = idempotencyKey;
+        }
+    }
+
+    private final CardProcessor processor;
+    private final int maxBatchSize;
+    private final long lingerMillis;
+    private final BlockingQueue<AuthorizationRequest> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService processorCalls;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    public CardAuthorizationBatcher(CardProcessor processor, int maxBatchSize, long lingerMillis, int maxBatchesInFlight) {
+        if(maxBatchSize <= 0 || lingerMillis < 0 || maxBatchesInFlight <= 0) {
+            throw new IllegalArgumentException("Batch size and batches in flight should be positive, linger should not be negative");
+        }
+        this.processor = processor;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = lingerMillis;
+        this.processorCalls = Executors.newFixedThreadPool(maxBatchesInFlight);
+        this.dispatcher = new Thread(this::dispatchLoop, "card-authorization-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<PaymentStatus> authorize(int amount) {
+        return authorize(amount, UUID.randomUUID().toString());
+    }
+
+    public CompletableFuture<PaymentStatus> authorize(int amount, String idempotencyKey) {
+        if(closed) {
+            throw new IllegalStateException("Card authorization batcher is closed");
+        }
+        AuthorizationRequest request = new AuthorizationRequest(amount, idempotencyKey);
+        queue.add(request);
+        return request.result;
+    }
+
+    // takes the queued authorizations with the key out before they are sent, false when none was queued
+    // an authorization the dispatcher already took may be with the processor and can not be withdrawn
+    public boolean cancel(String idempotencyKey) {
+        boolean cancelled = false;
+        for(AuthorizationRequest request : queue) {
+            if(request.idempotencyKey.equals(idempotencyKey) && queue.remove(request)) {
+                request.result.cancel(false);
+                cancelled = true;
+            }
+        }
+        return cancelled;
+    }
+
+    // queued authorizations are still sent before the dispatcher stops
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        processorCalls.shutdown();
+    }
+
+    private void dispatchLoop() {
+        List<AuthorizationRequest> batch = new ArrayList<>(maxBatchSize);
+        while(!closed || !queue.isEmpty()) {
+            try {
+                AuthorizationRequest first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if(first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while(batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    AuthorizationRequest next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if(next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed = true;
+            }
+            if(!batch.isEmpty()) {
+                List<AuthorizationRequest> sent = new ArrayList<>(batch);
+                batch.clear();
+                processorCalls.execute(() -> send(sent));
+            }
+        }
+    }
+
+    private void send(List<AuthorizationRequest> batch) {
+        int[] amounts = new int[batch.size()];
+        String[] idempotencyKeys = new String[batch.size()];
+        for(int i = 0; i < amounts.length; i++) {
+            amounts[i] = batch.get(i).amount;
+            idempotencyKeys[i] = batch.get(i).idempotencyKey;
+        }
+        try {
+            PaymentStatus[] statuses = processor.authorizeBatch(idempotencyKeys, amounts, amounts.length);
+            for(int i = 0; i < amounts.length; i++) {
+                batch.get(i).result.complete(statuses[i]);
+            }
+        } catch (RuntimeException e) {
+            for(AuthorizationRequest request : batch) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+}
+
+// Class for latency histogram
+// power of two buckets of microseconds, recording is one atomic increment so any thread can record
+class LatencyHistogram {
+    private static final int NUM_BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    // upper bound of the bucket that holds the percentile, at most twice the real value
+    public long getPercentileMicros(double percentile) {
+        long total = count.get();
+        if(total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for(int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+            seen += buckets.get(bucket);
+            if(seen >= rank) {
+                return bucket == 0 ? 0 : 1L << bucket;
+            }
+        }
+        return maxMicros.get();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", p50<=" + getPercentileMicros(50) + "us, p99<=" + getPercentileMicros(99) + "us, max=" + getMaxMicros() + "us";
+    }
+}
+
+// Class for payment pipeline
+// runs payments without blocking the caller, every attempt gets the timeout of its strategy
+// failed or timed out attempts are retried with a growing pause until the strategy runs out of attempts
+// a timed out attempt is withdrawn if it is still queued, every attempt carries the idempotency key of the payment,
+// so an attempt that did reach the processor and a retry of it end up as one authorization
+class PaymentPipeline implements Closeable {
+    private static final long BASE_BACKOFF_MILLIS = 50;
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retries;
+
+    public PaymentPipeline() {
+        this.retries = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-retries");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // completes with FAILED rather than exceptionally once every attempt failed
+    public CompletableFuture<PaymentStatus> submit(Payment payment) {
+        PaymentStrategy strategy = payment.getPaymentStrategy();
+        LatencyHistogram histogram = latencies.computeIfAbsent(strategy.getName(), name -> new LatencyHistogram());
+        long start = System.nanoTime();
+        CompletableFuture<PaymentStatus> result = new CompletableFuture<>();
+        attempt(strategy, payment.getAmount(), payment.getIdempotencyKey(), 1, result);
+        return result.whenComplete((status, error) -> histogram.record(System.nanoTime() - start));
+    }
+
+    public LatencyHistogram getLatencies(String strategyName) {
+        return latencies.get(strategyName);
+    }
+
+    public Map<String, LatencyHistogram> getAllLatencies() {
+        return Collections.unmodifiableMap(latencies);
+    }
+
+    @Override
+    public void close() {
+        retries.shutdownNow();
+    }
+
+    private void attempt(PaymentStrategy strategy, int amount, String idempotencyKey, int attempt, CompletableFuture<PaymentStatus> result) {
+        CompletableFuture<PaymentStatus> pending;
+        try {
+            pending = strategy.processPaymentAsync(amount, idempotencyKey);
+        } catch (RuntimeException e) {
+            pending = CompletableFuture.failedFuture(e);
+        }
+        pending.orTimeout(strategy.getTimeoutMillis(), TimeUnit.MILLISECONDS).whenComplete((status, error) -> {
+            if(error == null) {
+                result.complete(status);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if(cause instanceof TimeoutException || cause instanceof CancellationException) {
+                strategy.cancel(idempotencyKey);
+            }
+            if(attempt < strategy.getMaxAttempts()) {
+                retries.schedule(() -> attempt(strategy, amount, idempotencyKey, attempt + 1, result), BASE_BACKOFF_MILLIS << (attempt - 1), TimeUnit.MILLISECONDS);
+            } else {
+                result.complete(PaymentStatus.FAILED);
+            }
+        });
+    }
+}
+
+// Class for exit gate
+// the barrier opens as soon as the payment is pending approved, the driver does not wait for the capture
+class ExitGate {
+    private final int gateNumber;
+    private final PaymentPipeline payments;
+
+    public ExitGate(int gateNumber, PaymentPipeline payments) {
+        this.gateNumber = gateNumber;
+        this.payments = payments;
+    }
+
+    public CompletableFuture<PaymentStatus> pay(ParkingTicket ticket, PaymentStrategy paymentStrategy) {
+        return new Payment(ticket.getFee(), paymentStrategy).processPaymentAsync(payments).whenComplete((status, error) -> {
+            if(status != null && status.opensBarrier()) {
+                System.out.println("Gate " + gateNumber + " opened for " + ticket.getLicencePlate());
+            } else {
+                System.out.println("Gate " + gateNumber + " stays closed for " + ticket.getLicencePlate() + ": " + status);
+            }
+        });
+    }
+}
+
+// Abstract class for ParkingSpot
+abstract class ParkingSpot {
+    private int spotNumber;
+    private int floorNumber;
+    private VehicleType spotType;
+    // several entry gates can park at the same time, the spot is taken by whoever flips this first
+    private final AtomicBoolean isOccupied;
+    // cleared first when the spot is vacated, so only one vacate can take the vehicle out
+    private final AtomicReference<Vehicle> vehicle = new AtomicReference<>();
+    private VehicleCompatibility compatibility = VehicleCompatibility.standard();
+
+    public ParkingSpot(int spotNumber, VehicleType spotType) {
+        this.spotNumber = spotNumber;
+        this.spotType = spotType;
+        this.isOccupied = new AtomicBoolean(false);
+    }
+
+    public int getSpotNumber() {
+        return spotNumber;
+    }
+
+    public void setSpotNumber(int spotNumber) {
+        this.spotNumber = spotNumber;
+    }
+
+    public int getFloorNumber() {
+        return floorNumber;
+    }
+
+    public void setFloorNumber(int floorNumber) {
+        this.floorNumber = floorNumber;
+    }
+
+    public VehicleType getSpotType() {
+        return spotType;
+    }
+
+    public void setSpotType(VehicleType spotType) {
+        this.spotType = spotType;
+    }
+
+    public boolean isOccupied() {
+        return isOccupied.get();
+    }
+
+    public void setOccupied(boolean occupied) {
+        isOccupied.set(occupied);
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle.get();
+    }
+
+    public void setVehicle(Vehicle vehicle) {
+        this.vehicle.set(vehicle);
+    }
+
+    // the spot stays occupied until it is vacated, false when another vacate already took the vehicle
+    public boolean detachVehicle(Vehicle expected) {
+        return expected != null && vehicle.compareAndSet(expected, null);
+    }
+
+    public VehicleCompatibility getCompatibility() {
+        return compatibility;
+    }
+
+    public void setCompatibility(VehicleCompatibility compatibility) {
+        this.compatibility = compatibility;
+    }
+
+    public boolean canParkVehicle(Vehicle vehicle) {
+        return compatibility.canPark(this.spotType, vehicle.getType());
+    }
+
+    public ParkingSpot parkVehicle(Vehicle vehicle) {
+        if(!this.canParkVehicle(vehicle)) {
+            throw new IllegalStateException("Parking spot "+ this.spotType + " is not suitable for vehicle "+ vehicle.getType());
+        }
+        if(!this.isOccupied.compareAndSet(false, true)) {
+            throw new IllegalStateException("Parking spot is already occupied");
+        }
+        this.vehicle.set(vehicle);
+
+        return this;
+    }
+
+    public ParkingSpot vacate() {
+        if(!this.isOccupied.get()) {
+            throw new IllegalStateException("Spot is already empty");
+        }
+        this.vehicle.set(null);
+        if(!this.isOccupied.compareAndSet(true, false)) {
+            throw new IllegalStateException("Spot is already empty");
+        }
+
+        return this;
+    }
+}
+
+// Class for car parking spot
+class CarParkingSpot extends ParkingSpot {
+    CarParkingSpot(int spotNumber) {
+        super(spotNumber, VehicleType.CAR);
+    }
+}
+
+// Class for bike parking spot
+class BikeParkingSpot extends ParkingSpot {
+    BikeParkingSpot(int spotNumber) {
+        super(spotNumber, VehicleType.BIKE);
+    }
+}
+
+// Class for other parking spot
+class OtherParkingSpot extends ParkingSpot {
+    OtherParkingSpot(int spotNumber) {
+        super(spotNumber, VehicleType.OTHER);
+    }
+}
+
+// Class for spot availability index
+// spots keep their list order, which is taken as the distance from the entrance
+// spot number lookup is an array read, free spots of every type are kept as bits in atomic words (one bit per spot)
+// a spot is claimed with a compare and set on its word, so gates never take a lock and never get the same spot
+// every vehicle type has its own words, so gates parking different types never touch the same word
+class SpotAvailabilityIndex {
+    private final ParkingSpot[] spots;
+    private final int[] slotBySpotNumber;
+    private final Map<VehicleType, AtomicLongArray> freeWords;
+    private final AtomicIntegerArray freeCounts;
+    private final int[] totalCounts;
+
+    public SpotAvailabilityIndex(List<ParkingSpot> spotList) {
+        this.spots = spotList.toArray(new ParkingSpot[0]);
+
+        int maxSpotNumber = -1;
+        for(ParkingSpot spot : spots) {
+            if(spot.getSpotNumber() < 0) {
+                throw new IllegalArgumentException("Spot number should not be negative");
+            }
+            maxSpotNumber = Math.max(maxSpotNumber, spot.getSpotNumber());
+        }
+        this.slotBySpotNumber = new int[maxSpotNumber + 1];
+        Arrays.fill(this.slotBySpotNumber, -1);
+
+        int numWords = (spots.length + 63) >>> 6;
+        this.freeWords = new EnumMap<>(VehicleType.class);
+        for(VehicleType type : VehicleType.values()) {
+            this.freeWords.put(type, new AtomicLongArray(numWords));
+        }
+        this.freeCounts = new AtomicIntegerArray(VehicleType.values().length);
+        this.totalCounts = new int[VehicleType.values().length];
+
+        for(int slot = 0; slot < spots.length; slot++) {
+            ParkingSpot spot = spots[slot];
+            if(slotBySpotNumber[spot.getSpotNumber()] != -1) {
+                throw new IllegalArgumentException("Duplicate spot number " + spot.getSpotNumber());
+            }
+            slotBySpotNumber[spot.getSpotNumber()] = slot;
+            totalCounts[spot.getSpotType().ordinal()]++;
+            if(!spot.isOccupied()) {
+                AtomicLongArray words = freeWords.get(spot.getSpotType());
+                words.set(slot >>> 6, words.get(slot >>> 6) | (1L << slot));
+                freeCounts.incrementAndGet(spot.getSpotType().ordinal());
+            }
+        }
+    }
+
+    public ParkingSpot getSpot(int spotNumber) {
+        int slot = getSlot(spotNumber);
+        return slot == -1 ? null : spots[slot];
+    }
+
+    public int getSlot(int spotNumber) {
+        if(spotNumber < 0 || spotNumber >= slotBySpotNumber.length) {
+            return -1;
+        }
+        return slotBySpotNumber[spotNumber];
+    }
+
+    public int getFreeCount(VehicleType type) {
+        return freeCounts.get(type.ordinal());
+    }
+
+    public int getTotalCount(VehicleType type) {
+        return totalCounts[type.ordinal()];
+    }
+
+    public ParkingSpot getSpotAt(int slot) {
+        return slot >= 0 && slot < spots.length ? spots[slot] : null;
+    }
+
+    public ParkingSpot claimFreeSpot(VehicleType type) {
+        return claimNearestFreeSpot(type, 0);
+    }
+
+    // claims count free spots of the type in a row and returns the first slot, -1 when there is no such row
+    // a row is found with shifts and ands inside one word, so it never spans two words
+    public int claimAdjacentFreeSpots(VehicleType type, int count) {
+        AtomicLongArray words = freeWords.get(type);
+        for(int word = 0; word < words.length() && getFreeCount(type) >= count; word++) {
+            while(true) {
+                long free = words.get(word);
+                long rowStarts = free;
+                for(int i = 1; i < count; i++) {
+                    rowStarts &= free >>> i;
+                }
+                if(rowStarts == 0) {
+                    break;
+                }
+                int first = Long.numberOfTrailingZeros(rowStarts);
+                long row = ((1L << count) - 1) << first;
+                if(words.compareAndSet(word, free, free & ~row)) {
+                    freeCounts.addAndGet(type.ordinal(), -count);
+                    return (word << 6) + first;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // claims a free spot of the type in the word of fromSlot or the closest word with one, null when the lot is full
+    // gates at different slots start on different words, which spreads them out when the lot is busy
+    public ParkingSpot claimNearestFreeSpot(VehicleType type, int fromSlot) {
+        AtomicLongArray words = freeWords.get(type);
+        int numWords = words.length();
+        int home = Math.max(0, Math.min(fromSlot, spots.length - 1)) >>> 6;
+
+        for(int distance = 0; distance < numWords && getFreeCount(type) > 0; distance++) {
+            int after = home + distance;
+            int before = home - distance;
+            if(after >= numWords && before < 0) {
+                break;
+            }
+            int slot = after < numWords ? claimInWord(words, after) : -1;
+            if(slot == -1 && distance > 0 && before >= 0) {
+                slot = claimInWord(words, before);
+            }
+            if(slot != -1) {
+                freeCounts.decrementAndGet(type.ordinal());
+                return spots[slot];
+            }
+        }
+        return null;
+    }
+
+    // claims the given spot, false when someone else holds it
+    public boolean claim(ParkingSpot spot) {
+        int slot = getSlot(spot.getSpotNumber());
+        AtomicLongArray words = freeWords.get(spot.getSpotType());
+        long bit = 1L << slot;
+        while(true) {
+            long free = words.get(slot >>> 6);
+            if((free & bit) == 0) {
+                return false;
+            }
+            if(words.compareAndSet(slot >>> 6, free, free & ~bit)) {
+                freeCounts.decrementAndGet(spot.getSpotType().ordinal());
+                return true;
+            }
+        }
+    }
+
+    // gives a claimed spot back, false when it was already free
+    public boolean release(ParkingSpot spot) {
+        int slot = getSlot(spot.getSpotNumber());
+        AtomicLongArray words = freeWords.get(spot.getSpotType());
+        long bit = 1L << slot;
+        while(true) {
+            long free = words.get(slot >>> 6);
+            if((free & bit) != 0) {
+                return false;
+            }
+            if(words.compareAndSet(slot >>> 6, free, free | bit)) {
+                freeCounts.incrementAndGet(spot.getSpotType().ordinal());
+                return true;
+            }
+        }
+    }
+
+    private int claimInWord(AtomicLongArray words, int word) {
+        while(true) {
+            long free = words.get(word);
+            if(free == 0) {
+                return -1;
+            }
+            long bit = Long.lowestOneBit(free);
+            if(words.compareAndSet(word, free, free & ~bit)) {
+                return (word << 6) + Long.numberOfTrailingZeros(bit);
+            }
+        }
+    }
+}
+
+// Class for unexpected failures while parking or vacating
+class InternalServerException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public InternalServerException(String message) {
+        super(message);
+    }
+}
+
+// Class for ParkingLot
+class ParkingLot {
+    private List<ParkingSpot> spots;
+    private SpotAvailabilityIndex index;
+    private VehicleCompatibility compatibility = VehicleCompatibility.standard();
+
+    public ParkingLot(List<ParkingSpot> spots) {
+        this.spots = spots;
+        this.index = new SpotAvailabilityIndex(spots);
+    }
+
+    public List<ParkingSpot> getSpots() {
+        return spots;
+    }
+
+    public ParkingSpot getSpot(int spotNumber) {
+        return index.getSpot(spotNumber);
+    }
+
+    public int getFreeSpotCount(VehicleType type) {
+        return index.getFreeCount(type);
+    }
+
+    // parks at the free spot of the vehicle type nearest to the entrance
+    public ParkingSpot parkVehicle(Vehicle vehicle) {
+        return parkVehicle(vehicle, 0);
+    }
+
+    // spots follow the rules, which are applied to every spot of the lot
+    public void setCompatibility(VehicleCompatibility compatibility) {
+        this.compatibility = compatibility;
+        for(ParkingSpot spot : spots) {
+            spot.setCompatibility(compatibility);
+        }
+    }
+
+    // safe to call from many entry gates at once, each gate passes the slot it is closest to
+    // spot types are tried in the order of the rules, an oversized vehicle returns the first of its spots
+    public ParkingSpot parkVehicle(Vehicle vehicle, int gateSlot) {
+        for(VehicleType spotType : compatibility.getSpotTypes(vehicle.getType())) {
+            int count = compatibility.getSpotsNeeded(vehicle.getType(), spotType);
+            if(count == 1) {
+                ParkingSpot spot = index.claimNearestFreeSpot(spotType, gateSlot);
+                if(spot != null) {
+                    return parkClaimed(spot, vehicle);
+                }
+                continue;
+            }
+            int first = index.claimAdjacentFreeSpots(spotType, count);
+            if(first != -1) {
+                return parkClaimedSpan(first, count, vehicle);
+            }
+        }
+        throw new IllegalStateException("No free spot for vehicle " + vehicle.getType());
+    }
+
+    public ParkingSpot parkVehicle(int spotNumber, Vehicle vehicle) {
+        try {
+            ParkingSpot spot = this.getSpot(spotNumber);
+            if(spot != null) {
+                if(!index.claim(spot)) {
+                    throw new IllegalStateException("Parking spot is already occupied");
+                }
+                spot = parkClaimed(spot, vehicle);
+            } else {
+                System.out.println("Spot not found");
+            }
+            return spot;
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(e.getMessage());
+        } catch (Exception e) {
+            throw new InternalServerException(e.getMessage());
+        }
+    }
+
+    public ParkingSpot vacate(int spotNumber) {
+        try {
+            ParkingSpot spot = this.getSpot(spotNumber);
+            if(spot != null) {
+                // an oversized vehicle also frees the adjacent spots it took
+                Vehicle vehicle = spot.getVehicle();
+                int slot = index.getSlot(spotNumber);
+                int first = slot;
+                int last = slot;
+                while(vehicle != null && index.getSpotAt(first - 1) != null && index.getSpotAt(first - 1).getVehicle() == vehicle) {
+                    first--;
+                }
+                while(vehicle != null && index.getSpotAt(last + 1) != null && index.getSpotAt(last + 1).getVehicle() == vehicle) {
+                    last++;
+                }
+                for(int i = first; i <= last; i++) {
+                    index.release(index.getSpotAt(i).vacate());
+                }
+            } else {
+                System.out.println("Spot not found");
+            }
+            return spot;
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(e.getMessage());
+        } catch (Exception e) {
+            throw new InternalServerException(e.getMessage());
+        }
+    }
+
+    // the index claim is what makes the spot ours, give it back if the vehicle does not fit
+    private ParkingSpot parkClaimed(ParkingSpot spot, Vehicle vehicle) {
+        try {
+            return spot.parkVehicle(vehicle);
+        } catch (IllegalStateException e) {
+            index.release(spot);
+            throw e;
+        }
+    }
+
+    // either every claimed spot takes the vehicle or all of them are given back
+    private ParkingSpot parkClaimedSpan(int first, int count, Vehicle vehicle) {
+        for(int slot = first; slot < first + count; slot++) {
+            try {
+                parkClaimed(index.getSpotAt(slot), vehicle);
+            } catch (IllegalStateException e) {
+                for(int parked = first; parked < slot; parked++) {
+                    index.release(index.getSpotAt(parked).vacate());
+                }
+                for(int claimed = slot + 1; claimed < first + count; claimed++) {
+                    index.release(index.getSpotAt(claimed));
+                }
+                throw e;
+            }
+        }
+        return index.getSpotAt(first);
+    }
+}
+
+
+// Class for parking allocation stress check
+// many gates park and vacate on a lot with fewer spots than gates, every parked spot is recorded with its vehicle
+// a spot recorded twice means two gates got the same spot
+class ParkingAllocationStressTest {
+    public static void main(String[] args) throws InterruptedException {
+        int numSpots = 8;
+        int numGates = 16;
+        int parksPerGate = 200_000;
+
+        List<ParkingSpot> spots = new ArrayList<>();
+        for(int spotNumber = 0; spotNumber < numSpots; spotNumber++) {
+            spots.add(new CarParkingSpot(spotNumber));
+        }
+        ParkingLot lot = new ParkingLot(spots);
+
+        AtomicReferenceArray<Vehicle> parkedVehicles = new AtomicReferenceArray<>(numSpots);
+        AtomicInteger doubleBookings = new AtomicInteger();
+        AtomicInteger parked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService gates = Executors.newFixedThreadPool(numGates);
+
+        for(int gate = 0; gate < numGates; gate++) {
+            int gateSlot = gate * numSpots / numGates;
+            String gateName = "GATE-" + gate + "-";
+            gates.submit(() -> {
+                start.await();
+                for(int i = 0; i < parksPerGate; i++) {
+                    Vehicle vehicle = new CarVehicle(gateName + i, VehicleType.CAR, new BasicParkingFeeStrategy());
+                    ParkingSpot spot;
+                    try {
+                        spot = lot.parkVehicle(vehicle, gateSlot);
+                    } catch (IllegalStateException e) {
+                        rejected.incrementAndGet();
+                        continue;
+                    }
+                    parked.incrementAndGet();
+                    if(!parkedVehicles.compareAndSet(spot.getSpotNumber(), null, vehicle) || spot.getVehicle() != vehicle) {
+                        doubleBookings.incrementAndGet();
+                    }
+                    parkedVehicles.compareAndSet(spot.getSpotNumber(), vehicle, null);
+                    lot.vacate(spot.getSpotNumber());
+                }
+                return null;
+            });
+        }
+
+        start.countDown();
+        gates.shutdown();
+        if(!gates.awaitTermination(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Gates did not finish");
+        }
+
+        System.out.println("Parked " + parked.get() + ", rejected as full " + rejected.get() + ", double bookings " + doubleBookings.get());
+        if(doubleBookings.get() != 0) {
+            throw new IllegalStateException("Spot was given to two vehicles " + doubleBookings.get() + " times");
+        }
+        if(lot.getFreeSpotCount(VehicleType.CAR) != numSpots) {
+            throw new IllegalStateException("Free spot count is " + lot.getFreeSpotCount(VehicleType.CAR) + " after every vehicle left");
+        }
+        for(ParkingSpot spot : spots) {
+            if(spot.isOccupied()) {
+                throw new IllegalStateException("Spot " + spot.getSpotNumber() + " is still occupied");
+            }
+        }
+    }
+}
+
+// Option1 Extensibility: for supporting multiple floors, we can leverage spotNumber and make it unique in complete parking lot system
+// Option2 Extensibility: for supporting multiple floors, we can introlduce parking floors class and restructure as following code
+
+class ParkingFloor {
+    private int floorNumber;
+    private List<ParkingSpot> spots;
+    private SpotAvailabilityIndex index;
+
+    public ParkingFloor(int floorNumber, List<ParkingSpot> spots) {
+        this.floorNumber = floorNumber;
+        this.spots = spots;
+        this.index = new SpotAvailabilityIndex(spots);
+        for(ParkingSpot spot : spots) {
+            spot.setFloorNumber(floorNumber);
+        }
+    }
+
+    public int getFloorNumber() {
+        return floorNumber;
+    }
+
+    public void setFloorNumber(int floorNumber) {
+        this.floorNumber = floorNumber;
+    }
+
+    public List<ParkingSpot> getSpots() {
+        return spots;
+    }
+
+    public void setSpots(List<ParkingSpot> spots) {
+        this.spots = spots;
+        this.index = new SpotAvailabilityIndex(spots);
+    }
+
+    public ParkingSpot getSpot(int spotNumber) {
+        return index.getSpot(spotNumber);
+    }
+
+    // the spot and the count - 1 spots after it in list order, the spots an oversized vehicle parked there takes
+    public List<ParkingSpot> getSpan(int spotNumber, int count) {
+        if(getSpot(spotNumber) == null) {
+            throw new IllegalStateException("Spot " + spotNumber + " does not exist on floor " + floorNumber);
+        }
+        int first = index.getSlot(spotNumber);
+        List<ParkingSpot> span = new ArrayList<>(count);
+        for(int slot = first; slot < first + count; slot++) {
+            ParkingSpot spot = index.getSpotAt(slot);
+            if(spot == null) {
+                throw new IllegalStateException("Span of " + count + " spots from spot " + spotNumber + " runs past the end of floor " + floorNumber);
+            }
+            span.add(spot);
+        }
+        return span;
+    }
+
+    public int getFreeSpotCount(VehicleType type) {
+        return index.getFreeCount(type);
+    }
+
+    public int getOccupiedSpotCount(VehicleType type) {
+        return index.getTotalCount(type) - index.getFreeCount(type);
+    }
+
+    public int getTotalSpotCount(VehicleType type) {
+        return index.getTotalCount(type);
+    }
+
+    // park and vacate go through the floor so that its index stays in sync with the spots
+    public ParkingSpot parkVehicle(Vehicle vehicle) {
+        List<ParkingSpot> parked = parkVehicle(vehicle, vehicle.getType(), 1);
+        return parked == null ? null : parked.get(0);
+    }
+
+    // parks on count adjacent free spots of the spot type, null when the floor has no such spots
+    public List<ParkingSpot> parkVehicle(Vehicle vehicle, VehicleType spotType, int count) {
+        if(count == 1) {
+            ParkingSpot spot = index.claimFreeSpot(spotType);
+            return spot == null ? null : List.of(parkClaimed(spot, vehicle));
+        }
+        int first = index.claimAdjacentFreeSpots(spotType, count);
+        if(first == -1) {
+            return null;
+        }
+        // either every claimed spot takes the vehicle or all of them are given back
+        List<ParkingSpot> parked = new ArrayList<>(count);
+        for(int slot = first; slot < first + count; slot++) {
+            try {
+                parked.add(parkClaimed(index.getSpotAt(slot), vehicle));
+            } catch (IllegalStateException e) {
+                finishVacate(parked);
+                for(int claimed = slot + 1; claimed < first + count; claimed++) {
+                    index.release(index.getSpotAt(claimed));
+                }
+                throw e;
+            }
+        }
+        return parked;
+    }
+
+    public ParkingSpot parkVehicle(int spotNumber, Vehicle vehicle) {
+        ParkingSpot spot = getSpot(spotNumber);
+        if(spot == null) {
+            return null;
+        }
+        if(!index.claim(spot)) {
+            throw new IllegalStateException("Parking spot is already occupied");
+        }
+        return parkClaimed(spot, vehicle);
+    }
+
+    public ParkingSpot vacate(int spotNumber) {
+        List<ParkingSpot> vacated = vacateAll(spotNumber);
+        return vacated.isEmpty() ? null : getSpot(spotNumber);
+    }
+
+    // vacates the spot and the adjacent spots taken by the same oversized vehicle
+    public List<ParkingSpot> vacateAll(int spotNumber) {
+        ParkingSpot spot = getSpot(spotNumber);
+        if(spot == null) {
+            return List.of();
+        }
+        List<ParkingSpot> vacated = beginVacate(spotNumber, spot.getVehicle());
+        finishVacate(vacated);
+        return vacated;
+    }
+
+    // takes the vehicle out of the spot and the adjacent spots it uses, they stay occupied until finishVacate
+    // so the caller can log the vacate before any gate can park there again
+    public List<ParkingSpot> beginVacate(int spotNumber, Vehicle vehicle) {
+        if(vehicle == null) {
+            throw new IllegalStateException("Spot " + spotNumber + " has no vehicle to vacate");
+        }
+        int first = index.getSlot(spotNumber);
+        int last = first;
+        while(index.getSpotAt(first - 1) != null && index.getSpotAt(first - 1).getVehicle() == vehicle) {
+            first--;
+        }
+        while(index.getSpotAt(last + 1) != null && index.getSpotAt(last + 1).getVehicle() == vehicle) {
+            last++;
+        }
+        List<ParkingSpot> taken = new ArrayList<>(last - first + 1);
+        for(int slot = first; slot <= last; slot++) {
+            ParkingSpot spot = index.getSpotAt(slot);
+            if(!spot.detachVehicle(vehicle)) {
+                cancelVacate(taken, vehicle);
+                throw new IllegalStateException("Spot " + spotNumber + " is already being vacated");
+            }
+            taken.add(spot);
+        }
+        return taken;
+    }
+
+    // puts the vehicle back when the vacate could not be logged
+    public void cancelVacate(List<ParkingSpot> taken, Vehicle vehicle) {
+        for(ParkingSpot spot : taken) {
+            spot.setVehicle(vehicle);
+        }
+    }
+
+    public void finishVacate(List<ParkingSpot> taken) {
+        for(ParkingSpot spot : taken) {
+            spot.vacate();
+            index.release(spot);
+        }
+    }
+
+    // a held spot is taken out of walk-in allocation without a vehicle, it is kept for a reservation
+    public boolean hold(int spotNumber) {
+        ParkingSpot spot = getSpot(spotNumber);
+        return spot != null && index.claim(spot);
+    }
+
+    public void releaseHold(int spotNumber) {
+        ParkingSpot spot = getSpot(spotNumber);
+        if(spot.isOccupied() || !index.release(spot)) {
+            throw new IllegalStateException("Spot " + spotNumber + " is not held");
+        }
+    }
+
+    // parks on a spot this caller holds, vacate frees it as usual
+    public ParkingSpot parkHeld(int spotNumber, Vehicle vehicle) {
+        return getSpot(spotNumber).parkVehicle(vehicle);
+    }
+
+    // sets the spot state directly, used when state is recovered and when a change could not be logged
+    public boolean restoreOccupancy(int spotNumber, boolean occupied) {
+        return restoreOccupancy(spotNumber, occupied, false);
+    }
+
+    // a recovered spot gets a stand-in vehicle so it can be vacated, a spot joining the span of the spot
+    // before it in list order shares that spot's stand-in, so the span is vacated as one vehicle again
+    public boolean restoreOccupancy(int spotNumber, boolean occupied, boolean joinsPrevious) {
+        ParkingSpot spot = getSpot(spotNumber);
+        if(occupied) {
+            if(!index.claim(spot)) {
+                return false;
+            }
+            ParkingSpot previous = joinsPrevious ? index.getSpotAt(index.getSlot(spotNumber) - 1) : null;
+            Vehicle vehicle = previous == null ? null : previous.getVehicle();
+            spot.setVehicle(vehicle != null ? vehicle : new RecoveredVehicle(spot.getSpotType()));
+            spot.setOccupied(true);
+        } else {
+            if(!spot.isOccupied()) {
+                return false;
+            }
+            spot.setVehicle(null);
+            spot.setOccupied(false);
+            index.release(spot);
+        }
+        return true;
+    }
+
+    // one bit per spot in list order, set while the spot is occupied
+    public long[] getOccupancy() {
+        long[] words = new long[(spots.size() + 63) >>> 6];
+        for(int slot = 0; slot < spots.size(); slot++) {
+            if(spots.get(slot).isOccupied()) {
+                words[slot >>> 6] |= 1L << slot;
+            }
+        }
+        return words;
+    }
+
+    // one bit per spot in list order, set while the spot holds the same vehicle as the spot before it
+    public long[] getJoinedSpots() {
+        long[] words = new long[(spots.size() + 63) >>> 6];
+        for(int slot = 1; slot < spots.size(); slot++) {
+            Vehicle vehicle = spots.get(slot).getVehicle();
+            if(vehicle != null && vehicle == spots.get(slot - 1).getVehicle()) {
+                words[slot >>> 6] |= 1L << slot;
+            }
+        }
+        return words;
+    }
+
+    private ParkingSpot parkClaimed(ParkingSpot spot, Vehicle vehicle) {
+        try {
+            return spot.parkVehicle(vehicle);
+        } catch (IllegalStateException e) {
+            index.release(spot);
+            throw e;
+        }
+    }
+}
+
+// Class for ParkingLot with multifloorSupport, named apart from the single floor lot above
+// floors are indexed by floor number, free counts are kept per floor and for the whole lot so display boards read them in O(1)
+// every vehicle type has a bit per floor that is set while the floor has a free spot of that type,
+// so an arriving vehicle goes to the closest floor with room by scanning words of floors instead of visiting full floors
+class MultiFloorParkingLot {
+    private List<ParkingFloor> parkingFloors;
+    private final ParkingFloor[] floorsByNumber;
+    private final Map<VehicleType, AtomicLongArray> floorsWithFreeSpots;
+    private final AtomicIntegerArray freeCounts;
+    private final int[] totalCounts;
+    private final VehicleCompatibility compatibility;
+    private volatile ParkingEventLog eventLog;
+    private volatile ParkingEventListener eventListener;
+    // shared by vacates between their log record and their release, taken alone while a snapshot reads the spots
+    private final ReentrantReadWriteLock vacateLock = new ReentrantReadWriteLock();
+
+    public MultiFloorParkingLot(List<ParkingFloor> parkingFloors) {
+        this(parkingFloors, VehicleCompatibility.standard());
+    }
+
+    public MultiFloorParkingLot(List<ParkingFloor> parkingFloors, VehicleCompatibility compatibility) {
+        this.parkingFloors = parkingFloors;
+        this.compatibility = compatibility;
+
+        int maxFloorNumber = -1;
+        for(ParkingFloor floor : parkingFloors) {
+            if(floor.getFloorNumber() < 0) {
+                throw new IllegalArgumentException("Floor number should not be negative");
+            }
+            maxFloorNumber = Math.max(maxFloorNumber, floor.getFloorNumber());
+        }
+        this.floorsByNumber = new ParkingFloor[maxFloorNumber + 1];
+        this.floorsWithFreeSpots = new EnumMap<>(VehicleType.class);
+        for(VehicleType type : VehicleType.values()) {
+            this.floorsWithFreeSpots.put(type, new AtomicLongArray((maxFloorNumber + 64) >>> 6));
+        }
+        this.freeCounts = new AtomicIntegerArray(VehicleType.values().length);
+        this.totalCounts = new int[VehicleType.values().length];
+
+        for(ParkingFloor floor : parkingFloors) {
+            if(floorsByNumber[floor.getFloorNumber()] != null) {
+                throw new IllegalArgumentException("Duplicate floor number " + floor.getFloorNumber());
+            }
+            floorsByNumber[floor.getFloorNumber()] = floor;
+            for(ParkingSpot spot : floor.getSpots()) {
+                spot.setCompatibility(compatibility);
+            }
+            for(VehicleType type : VehicleType.values()) {
+                freeCounts.addAndGet(type.ordinal(), floor.getFreeSpotCount(type));
+                totalCounts[type.ordinal()] += floor.getTotalSpotCount(type);
+                if(floor.getFreeSpotCount(type) > 0) {
+                    setFloorBit(floorsWithFreeSpots.get(type), floor.getFloorNumber(), true);
+                }
+            }
+        }
+    }
+
+    public List<ParkingFloor> getParkingFloors() {
+        return parkingFloors;
+    }
+
+    // once set, every park and vacate is durable in the log before it returns
+    public void setEventLog(ParkingEventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    // called after every park and vacate, the listener should only do constant work
+    public void setEventListener(ParkingEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    public ParkingFloor getFloor(int floorNumber) {
+        if(floorNumber < 0 || floorNumber >= floorsByNumber.length) {
+            return null;
+        }
+        return floorsByNumber[floorNumber];
+    }
+
+    public ParkingSpot getSpot(int floorNumber, int spotNumber) {
+        ParkingFloor floor = this.getFloor(floorNumber);
+        return floor == null ? null : floor.getSpot(spotNumber);
+    }
+
+    public List<ParkingSpot> getSpan(int floorNumber, int spotNumber, int count) {
+        ParkingFloor floor = this.getFloor(floorNumber);
+        if(floor == null) {
+            throw new IllegalStateException("Floor " + floorNumber + " does not exist");
+        }
+        return floor.getSpan(spotNumber, count);
+    }
+
+    public int getFreeSpotCount(VehicleType type) {
+        return freeCounts.get(type.ordinal());
+    }
+
+    public int getOccupiedSpotCount(VehicleType type) {
+        return totalCounts[type.ordinal()] - freeCounts.get(type.ordinal());
+    }
+
+    public int getOccupiedSpotCount() {
+        int occupied = 0;
+        for(VehicleType type : VehicleType.values()) {
+            occupied += getOccupiedSpotCount(type);
+        }
+        return occupied;
+    }
+
+    // spot types are tried in the order of the compatibility rules, each on the floor closest to the entry floor first
+    // an oversized vehicle returns the first of its adjacent spots
+    public ParkingSpot parkVehicle(Vehicle vehicle, int entryFloor) {
+        return parkVehicleSpan(vehicle, entryFloor).get(0);
+    }
+
+    // same as parkVehicle, returns every spot the vehicle took in the floor's spot list order
+    public List<ParkingSpot> parkVehicleSpan(Vehicle vehicle, int entryFloor) {
+        for(VehicleType spotType : compatibility.getSpotTypes(vehicle.getType())) {
+            List<ParkingSpot> spots = parkOnNearestFloor(vehicle, spotType, compatibility.getSpotsNeeded(vehicle.getType(), spotType), entryFloor);
+            if(spots != null) {
+                return spots;
+            }
+        }
+        throw new IllegalStateException("No free spot for vehicle " + vehicle.getType());
+    }
+
+    public ParkingSpot parkVehicle(int floorNumber, int spotNumber, Vehicle vehicle) {
+        try {
+            ParkingFloor floor = this.getFloor(floorNumber);
+            ParkingSpot spot = floor == null ? null : floor.parkVehicle(spotNumber, vehicle);
+            if(spot == null) {
+                System.out.println("Spot not found");
+            } else {
+                onParked(floor, spot.getSpotType());
+                logParks(floor, List.of(spot));
+                notifyListener(true, floor, spot);
+            }
+            return spot;
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(e.getMessage());
+        } catch (Exception e) {
+            throw new InternalServerException(e.getMessage());
+        }
+    }
+
+    // the vacate is durable before its spots are released, so a gate parking there next always logs after it
+    public ParkingSpot vacate(int floorNumber, int spotNumber) {
+        try {
+            ParkingFloor floor = this.getFloor(floorNumber);
+            ParkingSpot spot = floor == null ? null : floor.getSpot(spotNumber);
+            if(spot == null) {
+                System.out.println("Spot not found");
+                return null;
+            }
+            List<ParkingSpot> vacated;
+            vacateLock.readLock().lock();
+            try {
+                Vehicle vehicle = spot.getVehicle();
+                vacated = floor.beginVacate(spotNumber, vehicle);
+                try {
+                    logEvents(ParkingEventLog.VACATE, floor, vacated);
+                } catch (IllegalStateException e) {
+                    floor.cancelVacate(vacated, vehicle);
+                    throw e;
+                }
+                floor.finishVacate(vacated);
+            } finally {
+                vacateLock.readLock().unlock();
+            }
+            for(ParkingSpot taken : vacated) {
+                onVacated(floor, taken.getSpotType());
+                notifyListener(false, floor, taken);
+            }
+            return spot;
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(e.getMessage());
+        } catch (Exception e) {
+            throw new InternalServerException(e.getMessage());
+        }
+    }
+
+    // held spots count as taken, walk-ins are never routed to them
+    public boolean holdSpot(int floorNumber, int spotNumber) {
+        ParkingFloor floor = this.getFloor(floorNumber);
+        if(floor == null || !floor.hold(spotNumber)) {
+            return false;
+        }
+        onParked(floor, floor.getSpot(spotNumber).getSpotType());
+        return true;
+    }
+
+    public void releaseHold(int floorNumber, int spotNumber) {
+        ParkingFloor floor = this.getFloor(floorNumber);
+        floor.releaseHold(spotNumber);
+        onVacated(floor, floor.getSpot(spotNumber).getSpotType());
+    }
+
+    public ParkingSpot parkHeld(int floorNumber, int spotNumber, Vehicle vehicle) {
+        ParkingFloor floor = this.getFloor(floorNumber);
+        ParkingSpot spot = floor.parkHeld(spotNumber, vehicle);
+        try {
+            logParks(floor, List.of(spot));
+        } catch (IllegalStateException e) {
+            // the undo released the spot, keep it held for the reservation
+            holdSpot(floorNumber, spotNumber);
+            throw e;
+        }
+        notifyListener(true, floor, spot);
+        return spot;
+    }
+
+    // applies recovered state without logging it again, returns false when the spot already was in that state
+    public boolean restoreOccupancy(int floorNumber, int spotNumber, boolean occupied) {
+        return restoreOccupancy(floorNumber, spotNumber, occupied, false);
+    }
+
+    // joinsPrevious puts the spot in the span of the spot before it, as logged for an oversized vehicle
+    public boolean restoreOccupancy(int floorNumber, int spotNumber, boolean occupied, boolean joinsPrevious) {
+        ParkingFloor floor = this.getFloor(floorNumber);
+        if(floor == null || floor.getSpot(spotNumber) == null) {
+            throw new IllegalStateException("Recovered spot " + spotNumber + " on floor " + floorNumber + " does not exist");
+        }
+        if(!floor.restoreOccupancy(spotNumber, occupied, joinsPrevious)) {
+            return false;
+        }
+        if(occupied) {
+            onParked(floor, floor.getSpot(spotNumber).getSpotType());
+        } else {
+            onVacated(floor, floor.getSpot(spotNumber).getSpotType());
+        }
+        return true;
+    }
+
+    // rolls the log and copies the occupancy and spans of every floor while no vacate is between its record and
+    // its release, so the copy holds every event below the returned boundary
+    public long rollEventLog(List<long[]> occupancy, List<long[]> joined) {
+        vacateLock.writeLock().lock();
+        try {
+            long boundary = eventLog.rollSegment();
+            for(ParkingFloor floor : parkingFloors) {
+                occupancy.add(floor.getOccupancy());
+                joined.add(floor.getJoinedSpots());
+            }
+            return boundary;
+        } finally {
+            vacateLock.writeLock().unlock();
+        }
+    }
+
+    // a spot is only handed out once its park is durable, so its vacate always comes later in the log
+    // the spots of an oversized vehicle are logged as one batch, when it can not be logged every spot is undone
+    private void logParks(ParkingFloor floor, List<ParkingSpot> spots) {
+        try {
+            logEvents(ParkingEventLog.PARK, floor, spots);
+        } catch (IllegalStateException e) {
+            for(ParkingSpot spot : spots) {
+                // a gate vacating the spot meanwhile already gave it back and counted it
+                if(floor.restoreOccupancy(spot.getSpotNumber(), false)) {
+                    onVacated(floor, spot.getSpotType());
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void logEvents(byte kind, ParkingFloor floor, List<ParkingSpot> spots) {
+        ParkingEventLog log = this.eventLog;
+        if(log == null) {
+            return;
+        }
+        int[] spotNumbers = new int[spots.size()];
+        for(int i = 0; i < spotNumbers.length; i++) {
+            spotNumbers[i] = spots.get(i).getSpotNumber();
+        }
+        log.appendAll(kind, floor.getFloorNumber(), spotNumbers);
+    }
+
+    private void notifyListener(boolean parked, ParkingFloor floor, ParkingSpot spot) {
+        ParkingEventListener listener = this.eventListener;
+        if(listener == null) {
+            return;
+        }
+        if(parked) {
+            listener.onParked(floor.getFloorNumber(), spot);
+        } else {
+            listener.onVacated(floor.getFloorNumber(), spot);
+        }
+    }
+
+    private void onVacated(ParkingFloor floor, VehicleType type) {
+        freeCounts.incrementAndGet(type.ordinal());
+        setFloorBit(floorsWithFreeSpots.get(type), floor.getFloorNumber(), true);
+    }
+
+    private void onParked(ParkingFloor floor, VehicleType type) {
+        freeCounts.decrementAndGet(type.ordinal());
+        removeIfFull(floor, type);
+    }
+
+    // a floor that ran out of spots leaves the routing bits, it is put back right away if a spot was vacated meanwhile
+    private void removeIfFull(ParkingFloor floor, VehicleType type) {
+        if(floor.getFreeSpotCount(type) == 0) {
+            AtomicLongArray floors = floorsWithFreeSpots.get(type);
+            setFloorBit(floors, floor.getFloorNumber(), false);
+            if(floor.getFreeSpotCount(type) > 0) {
+                setFloorBit(floors, floor.getFloorNumber(), true);
+            }
+        }
+    }
+
+    // visits floors with a free spot of the type outwards from the entry floor, full floors are skipped a word at a time
+    private List<ParkingSpot> parkOnNearestFloor(Vehicle vehicle, VehicleType spotType, int count, int entryFloor) {
+        if(getFreeSpotCount(spotType) < count || floorsByNumber.length == 0) {
+            return null;
+        }
+        AtomicLongArray floors = floorsWithFreeSpots.get(spotType);
+        int from = Math.max(0, Math.min(entryFloor, floorsByNumber.length - 1));
+        int above = nextFloorBit(floors, from);
+        int below = from == 0 ? -1 : previousFloorBit(floors, from - 1);
+        while(above != -1 || below != -1) {
+            int floorNumber;
+            if(above == -1 || (below != -1 && from - below < above - from)) {
+                floorNumber = below;
+                below = below == 0 ? -1 : previousFloorBit(floors, below - 1);
+            } else {
+                floorNumber = above;
+                above = above + 1 == floorsByNumber.length ? -1 : nextFloorBit(floors, above + 1);
+            }
+
+            ParkingFloor floor = floorsByNumber[floorNumber];
+            List<ParkingSpot> parked = floor.parkVehicle(vehicle, spotType, count);
+            if(parked == null) {
+                removeIfFull(floor, spotType);
+                continue;
+            }
+            for(ParkingSpot spot : parked) {
+                onParked(floor, spotType);
+            }
+            logParks(floor, parked);
+            for(ParkingSpot spot : parked) {
+                notifyListener(true, floor, spot);
+            }
+            return parked;
+        }
+        return null;
+    }
+
+    private static int nextFloorBit(AtomicLongArray floors, int from) {
+        int word = from >>> 6;
+        long bits = floors.get(word) & (-1L << from);
+        while(bits == 0) {
+            if(++word == floors.length()) {
+                return -1;
+            }
+            bits = floors.get(word);
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    private static int previousFloorBit(AtomicLongArray floors, int from) {
+        int word = from >>> 6;
+        long bits = floors.get(word) & (-1L >>> (63 - (from & 63)));
+        while(bits == 0) {
+            if(word-- == 0) {
+                return -1;
+            }
+            bits = floors.get(word);
+        }
+        return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+    }
+
+    private static void setFloorBit(AtomicLongArray floors, int floorNumber, boolean free) {
+        long bit = 1L << floorNumber;
+        floors.getAndUpdate(floorNumber >>> 6, bits -> free ? bits | bit : bits & ~bit);
+    }
+}
+
+// Class for parking ticket
+class ParkingTicket {
+    private final long ticketId;
+    private final String licencePlate;
+    private final VehicleType vehicleType;
+    private final int floorNumber;
+    private final int spotNumber;
+    private final int spotCount;
+    private final long entryTime;
+    private long exitTime;
+    private int fee;
+    private boolean closed;
+
+    public ParkingTicket(long ticketId, String licencePlate, VehicleType vehicleType, int floorNumber, int spotNumber, long entryTime) {
+        this(ticketId, licencePlate, vehicleType, floorNumber, spotNumber, 1, entryTime);
+    }
+
+    public ParkingTicket(long ticketId, String licencePlate, VehicleType vehicleType, int floorNumber, int spotNumber, int spotCount, long entryTime) {
+        this.ticketId = ticketId;
+        this.licencePlate = licencePlate;
+        this.vehicleType = vehicleType;
+        this.floorNumber = floorNumber;
+        this.spotNumber = spotNumber;
+        this.spotCount = spotCount;
+        this.entryTime = entryTime;
+    }
+
+    public long getTicketId() {
+        return ticketId;
+    }
+
+    public String getLicencePlate() {
+        return licencePlate;
+    }
+
+    public VehicleType getVehicleType() {
+        return vehicleType;
+    }
+
+    public int getFloorNumber() {
+        return floorNumber;
+    }
+
+    // first spot of the span, an oversized vehicle also takes the spotCount - 1 spots after it in the floor's spot list
+    public int getSpotNumber() {
+        return spotNumber;
+    }
+
+    public int getSpotCount() {
+        return spotCount;
+    }
+
+    public long getEntryTime() {
+        return entryTime;
+    }
+
+    public long getExitTime() {
+        return exitTime;
+    }
+
+    public int getFee() {
+        return fee;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void close(long exitTime, int fee) {
+        if(this.closed) {
+            throw new IllegalStateException("Ticket " + ticketId + " is already closed");
+        }
+        this.exitTime = exitTime;
+        this.fee = fee;
+        this.closed = true;
+    }
+}
+
+// Class for active ticket table
+// active tickets live in a memory mapped file, not on the heap, so millions of them add nothing to gc work
+// and the table is still there when the process restarts
+// records sit in fixed 64 byte slots taken from a free list and never move, the ticket id carries its slot,
+// plates are found through an open addressing index of (plate hash, slot) that uses backward shift on removal
+class ActiveTicketTable implements Closeable {
+    private static final int MAGIC = 0x5054424C;
+    private static final int MAX_PLATE_BYTES = 16;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_CAPACITY = 4;
+    private static final int HEADER_INDEX_CAPACITY = 8;
+    private static final int HEADER_SIZE_FIELD = 12;
+    private static final int HEADER_FREE_HEAD = 16;
+    private static final int HEADER_NEXT_SEQUENCE = 24;
+
+    private static final int RECORD_SIZE = 64;
+    private static final int RECORD_TICKET_ID = 0;
+    private static final int RECORD_ENTRY_TIME = 8;
+    private static final int RECORD_PLATE_HASH = 16;
+    private static final int RECORD_FLOOR = 24;
+    private static final int RECORD_NEXT_FREE = 24;
+    private static final int RECORD_SPOT = 28;
+    private static final int RECORD_TYPE = 32;
+    private static final int RECORD_PLATE_LENGTH = 33;
+    private static final int RECORD_PLATE = 34;
+    // zero in tables written before spans were kept, read as a single spot
+    private static final int RECORD_SPOT_COUNT = 52;
+
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int INDEX_HASH = 0;
+    private static final int INDEX_SLOT = 8;
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int indexMask;
+    private final int indexOffset;
+
+    private ActiveTicketTable(MappedByteBuffer buffer, int capacity, int indexCapacity) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.indexMask = indexCapacity - 1;
+        this.indexOffset = HEADER_SIZE + capacity * RECORD_SIZE;
+    }
+
+    // opens the table kept in the file, a new file is laid out for the given number of active tickets
+    public static ActiveTicketTable open(Path file, int capacity) throws IOException {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Ticket table capacity should be positive");
+        }
+        // index is at least twice the capacity so probe chains stay short when the table is full
+        int indexCapacity = Integer.highestOneBit(capacity) << 2;
+        long fileSize = HEADER_SIZE + (long) capacity * RECORD_SIZE + (long) indexCapacity * INDEX_ENTRY_SIZE;
+        if(fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Ticket table for " + capacity + " tickets does not fit in one mapping");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean created = channel.size() == 0;
+            if(!created && channel.size() != fileSize) {
+                throw new IllegalStateException("Ticket table file " + file + " was created for a different capacity");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            ActiveTicketTable table = new ActiveTicketTable(buffer, capacity, indexCapacity);
+            if(created) {
+                table.format(indexCapacity);
+            } else if(buffer.getInt(HEADER_MAGIC) != MAGIC || buffer.getInt(HEADER_CAPACITY) != capacity) {
+                throw new IllegalStateException("Ticket table file " + file + " was created for a different capacity");
+            } else {
+                table.rebuild();
+            }
+            return table;
+        }
+    }
+
+    public synchronized int size() {
+        return buffer.getInt(HEADER_SIZE_FIELD);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public ParkingTicket issue(String licencePlate, VehicleType type, int floorNumber, int spotNumber, long entryTime) {
+        return issue(licencePlate, type, floorNumber, spotNumber, 1, entryTime);
+    }
+
+    public synchronized ParkingTicket issue(String licencePlate, VehicleType type, int floorNumber, int spotNumber, int spotCount, long entryTime) {
+        if(spotCount < 1) {
+            throw new IllegalArgumentException("A ticket should cover at least one spot");
+        }
+        byte[] plate = encodePlate(licencePlate);
+        long hash = hashPlate(plate);
+        if(findIndexEntry(hash, plate) != -1) {
+            throw new IllegalStateException("Vehicle " + licencePlate + " already has an active ticket");
+        }
+        int slot = buffer.getInt(HEADER_FREE_HEAD);
+        if(slot == -1) {
+            throw new IllegalStateException("Ticket table is full");
+        }
+
+        int record = recordOffset(slot);
+        int nextFree = buffer.getInt(record + RECORD_NEXT_FREE);
+        long sequence = buffer.getLong(HEADER_NEXT_SEQUENCE);
+        buffer.putLong(HEADER_NEXT_SEQUENCE, sequence + 1);
+        long ticketId = (sequence << 32) | slot;
+
+        // a crash anywhere in here is repaired by rebuild on the next open
+        buffer.putLong(record + RECORD_ENTRY_TIME, entryTime);
+        buffer.putLong(record + RECORD_PLATE_HASH, hash);
+        buffer.putInt(record + RECORD_FLOOR, floorNumber);
+        buffer.putInt(record + RECORD_SPOT, spotNumber);
+        buffer.putInt(record + RECORD_SPOT_COUNT, spotCount);
+        buffer.put(record + RECORD_TYPE, (byte) type.ordinal());
+        buffer.put(record + RECORD_PLATE_LENGTH, (byte) plate.length);
+        buffer.put(record + RECORD_PLATE, plate);
+        // ticket id goes last, a record with an id is a complete record
+        buffer.putLong(record + RECORD_TICKET_ID, ticketId);
+        buffer.putInt(HEADER_FREE_HEAD, nextFree);
+
+        addIndexEntry(hash, slot);
+        buffer.putInt(HEADER_SIZE_FIELD, buffer.getInt(HEADER_SIZE_FIELD) + 1);
+
+        return new ParkingTicket(ticketId, licencePlate, type, floorNumber, spotNumber, spotCount, entryTime);
+    }
+
+    public synchronized ParkingTicket findById(long ticketId) {
+        int slot = slotOf(ticketId);
+        return slot == -1 ? null : readTicket(slot);
+    }
+
+    public synchronized ParkingTicket findByPlate(String licencePlate) {
+        byte[] plate = encodePlate(licencePlate);
+        int entry = findIndexEntry(hashPlate(plate), plate);
+        return entry == -1 ? null : readTicket(buffer.getInt(indexEntryOffset(entry) + INDEX_SLOT));
+    }
+
+    // removes the active ticket and returns it, null when the ticket is not active
+    public synchronized ParkingTicket remove(long ticketId) {
+        int slot = slotOf(ticketId);
+        if(slot == -1) {
+            return null;
+        }
+        ParkingTicket ticket = readTicket(slot);
+        int record = recordOffset(slot);
+        byte[] plate = readPlate(record);
+        removeIndexEntry(findIndexEntry(buffer.getLong(record + RECORD_PLATE_HASH), plate));
+
+        buffer.putLong(record + RECORD_TICKET_ID, 0);
+        buffer.putInt(record + RECORD_NEXT_FREE, buffer.getInt(HEADER_FREE_HEAD));
+        buffer.putInt(HEADER_FREE_HEAD, slot);
+        buffer.putInt(HEADER_SIZE_FIELD, buffer.getInt(HEADER_SIZE_FIELD) - 1);
+        return ticket;
+    }
+
+    public synchronized void forEach(Consumer<ParkingTicket> action) {
+        for(int slot = 0; slot < capacity; slot++) {
+            if(buffer.getLong(recordOffset(slot) + RECORD_TICKET_ID) != 0) {
+                action.accept(readTicket(slot));
+            }
+        }
+    }
+
+    // mapped pages already survive a process crash, force also makes them survive a machine crash
+    @Override
+    public synchronized void close() {
+        buffer.force();
+    }
+
+    private void format(int indexCapacity) {
+        buffer.putInt(HEADER_CAPACITY, capacity);
+        buffer.putInt(HEADER_INDEX_CAPACITY, indexCapacity);
+        buffer.putInt(HEADER_SIZE_FIELD, 0);
+        buffer.putLong(HEADER_NEXT_SEQUENCE, 1);
+        for(int slot = 0; slot < capacity; slot++) {
+            buffer.putInt(recordOffset(slot) + RECORD_NEXT_FREE, slot + 1 < capacity ? slot + 1 : -1);
+        }
+        buffer.putInt(HEADER_FREE_HEAD, 0);
+        buffer.putInt(HEADER_MAGIC, MAGIC);
+    }
+
+    // records are the truth, a crash between the writes of issue or remove may leave the free list, size
+    // or plate index behind, so all three are derived again from the records that have a ticket id
+    private void rebuild() {
+        for(int entry = 0; entry <= indexMask; entry++) {
+            buffer.putLong(indexEntryOffset(entry) + INDEX_HASH, 0);
+        }
+        int size = 0;
+        int freeHead = -1;
+        long nextSequence = Math.max(1, buffer.getLong(HEADER_NEXT_SEQUENCE));
+        for(int slot = capacity - 1; slot >= 0; slot--) {
+            int record = recordOffset(slot);
+            long ticketId = buffer.getLong(record + RECORD_TICKET_ID);
+            if(ticketId == 0) {
+                buffer.putInt(record + RECORD_NEXT_FREE, freeHead);
+                freeHead = slot;
+                continue;
+            }
+            if((int) ticketId != slot) {
+                throw new IllegalStateException("Ticket table record " + slot + " holds ticket " + ticketId + " of another slot");
+            }
+            addIndexEntry(buffer.getLong(record + RECORD_PLATE_HASH), slot);
+            nextSequence = Math.max(nextSequence, (ticketId >>> 32) + 1);
+            size++;
+        }
+        buffer.putInt(HEADER_FREE_HEAD, freeHead);
+        buffer.putInt(HEADER_SIZE_FIELD, size);
+        buffer.putLong(HEADER_NEXT_SEQUENCE, nextSequence);
+    }
+
+    private void addIndexEntry(long hash, int slot) {
+        int entry = (int) hash & indexMask;
+        while(buffer.getLong(indexEntryOffset(entry) + INDEX_HASH) != 0) {
+            entry = (entry + 1) & indexMask;
+        }
+        buffer.putInt(indexEntryOffset(entry) + INDEX_SLOT, slot);
+        buffer.putLong(indexEntryOffset(entry) + INDEX_HASH, hash);
+    }
+
+    private int slotOf(long ticketId) {
+        int slot = (int) ticketId;
+        if(ticketId <= 0 || slot < 0 || slot >= capacity || buffer.getLong(recordOffset(slot) + RECORD_TICKET_ID) != ticketId) {
+            return -1;
+        }
+        return slot;
+    }
+
+    private int findIndexEntry(long hash, byte[] plate) {
+        int entry = (int) hash & indexMask;
+        while(true) {
+            int offset = indexEntryOffset(entry);
+            long entryHash = buffer.getLong(offset + INDEX_HASH);
+            if(entryHash == 0) {
+                return -1;
+            }
+            if(entryHash == hash && Arrays.equals(readPlate(recordOffset(buffer.getInt(offset + INDEX_SLOT))), plate)) {
+                return entry;
+            }
+            entry = (entry + 1) & indexMask;
+        }
+    }
+
+    // pulls later entries of the probe chain back into the hole so lookups never need tombstones
+    private void removeIndexEntry(int hole) {
+        int entry = (hole + 1) & indexMask;
+        while(true) {
+            long hash = buffer.getLong(indexEntryOffset(entry) + INDEX_HASH);
+            if(hash == 0) {
+                break;
+            }
+            int home = (int) hash & indexMask;
+            if(((entry - home) & indexMask) >= ((entry - hole) & indexMask)) {
+                buffer.putLong(indexEntryOffset(hole) + INDEX_HASH, hash);
+                buffer.putInt(indexEntryOffset(hole) + INDEX_SLOT, buffer.getInt(indexEntryOffset(entry) + INDEX_SLOT));
+                hole = entry;
+            }
+            entry = (entry + 1) & indexMask;
+        }
+        buffer.putLong(indexEntryOffset(hole) + INDEX_HASH, 0);
+    }
+
+    private ParkingTicket readTicket(int slot) {
+        int record = recordOffset(slot);
+        return new ParkingTicket(
+                buffer.getLong(record + RECORD_TICKET_ID),
+                new String(readPlate(record), StandardCharsets.UTF_8),
+                VehicleType.values()[buffer.get(record + RECORD_TYPE)],
+                buffer.getInt(record + RECORD_FLOOR),
+                buffer.getInt(record + RECORD_SPOT),
+                Math.max(1, buffer.getInt(record + RECORD_SPOT_COUNT)),
+                buffer.getLong(record + RECORD_ENTRY_TIME));
+    }
+
+    private byte[] readPlate(int record) {
+        byte[] plate = new byte[buffer.get(record + RECORD_PLATE_LENGTH)];
+        buffer.get(record + RECORD_PLATE, plate);
+        return plate;
+    }
+
+    private int recordOffset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private int indexEntryOffset(int entry) {
+        return indexOffset + entry * INDEX_ENTRY_SIZE;
+    }
+
+    private static byte[] encodePlate(String licencePlate) {
+        byte[] plate = licencePlate.getBytes(StandardCharsets.UTF_8);
+        if(plate.length == 0 || plate.length > MAX_PLATE_BYTES) {
+            throw new IllegalArgumentException("Licence plate should be 1 to " + MAX_PLATE_BYTES + " bytes");
+        }
+        return plate;
+    }
+
+    // 64 bit fnv-1a, zero marks an empty index entry so it is never returned
+    private static long hashPlate(byte[] plate) {
+        long hash = 0xcbf29ce484222325L;
+        for(byte b : plate) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+}
+
+// Class for ticket service
+// issues a ticket when a vehicle is parked at entry and closes it with the fee at exit
+class TicketService {
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+    private static final int NUM_CLOSE_LOCKS = 64;
+
+    private final MultiFloorParkingLot parkingLot;
+    private final ActiveTicketTable activeTickets;
+    private final ParkingFeeStrategy feeStrategy;
+    private final VehicleFactory vehicleFactory;
+    // two exits with the same ticket take turns, the second one finds the ticket already closed
+    private final Object[] closeLocks = new Object[NUM_CLOSE_LOCKS];
+
+    // spots are taken again for tickets that were still active when the process stopped, every spot of a span
+    public TicketService(MultiFloorParkingLot parkingLot, ActiveTicketTable activeTickets, ParkingFeeStrategy feeStrategy) {
+        this.parkingLot = parkingLot;
+        this.activeTickets = activeTickets;
+        this.feeStrategy = feeStrategy;
+        this.vehicleFactory = new VehicleFactory();
+        for(int i = 0; i < NUM_CLOSE_LOCKS; i++) {
+            closeLocks[i] = new Object();
+        }
+        activeTickets.forEach(ticket -> {
+            Vehicle vehicle = vehicleFactory.createVehicle(ticket.getLicencePlate(), ticket.getVehicleType(), feeStrategy);
+            // the same vehicle on every spot lets a vacate find the whole span again
+            for(ParkingSpot spot : parkingLot.getSpan(ticket.getFloorNumber(), ticket.getSpotNumber(), ticket.getSpotCount())) {
+                // the spot may already be occupied again by the recovered parking state
+                if(spot.isOccupied()) {
+                    spot.setVehicle(vehicle);
+                } else {
+                    parkingLot.parkVehicle(ticket.getFloorNumber(), spot.getSpotNumber(), vehicle);
+                }
+            }
+        });
+    }
+
+    public ParkingTicket issueTicket(Vehicle vehicle, int entryFloor, long entryTime) {
+        if(activeTickets.findByPlate(vehicle.getLicencePlate()) != null) {
+            throw new IllegalStateException("Vehicle " + vehicle.getLicencePlate() + " is already parked");
+        }
+        List<ParkingSpot> spots = parkingLot.parkVehicleSpan(vehicle, entryFloor);
+        ParkingSpot spot = spots.get(0);
+        try {
+            return activeTickets.issue(vehicle.getLicencePlate(), vehicle.getType(), spot.getFloorNumber(), spot.getSpotNumber(), spots.size(), entryTime);
+        } catch (IllegalStateException e) {
+            parkingLot.vacate(spot.getFloorNumber(), spot.getSpotNumber());
+            throw e;
+        }
+    }
+
+    public ParkingTicket findTicket(long ticketId) {
+        return activeTickets.findById(ticketId);
+    }
+
+    public ParkingTicket findTicket(String licencePlate) {
+        return activeTickets.findByPlate(licencePlate);
+    }
+
+    public ParkingTicket closeTicket(String licencePlate, long exitTime) {
+        ParkingTicket ticket = activeTickets.findByPlate(licencePlate);
+        if(ticket == null) {
+            throw new IllegalStateException("No active ticket for vehicle " + licencePlate);
+        }
+        return closeTicket(ticket.getTicketId(), exitTime);
+    }
+
+    // started hours are charged, a stay shorter than an hour is charged as one hour, hour of day is taken in utc
+    // the ticket stays active until its spot is vacated, so a failed vacate can be retried with the same ticket
+    public ParkingTicket closeTicket(long ticketId, long exitTime) {
+        ParkingTicket ticket;
+        synchronized(closeLocks[(int) (ticketId & (NUM_CLOSE_LOCKS - 1))]) {
+            ticket = activeTickets.findById(ticketId);
+            if(ticket == null) {
+                throw new IllegalStateException("No active ticket " + ticketId);
+            }
+            parkingLot.vacate(ticket.getFloorNumber(), ticket.getSpotNumber());
+            activeTickets.remove(ticketId);
+        }
+        int hours = (int) Math.max(1, (exitTime - ticket.getEntryTime() + MILLIS_PER_HOUR - 1) / MILLIS_PER_HOUR);
+        int entryHour = (int) ((ticket.getEntryTime() / MILLIS_PER_HOUR) % 24);
+        ticket.close(exitTime, feeStrategy.calculateFee(ticket.getVehicleType(), entryHour, hours, DurationType.HOURLY));
+        return ticket;
+    }
+}
+
+// Class for parking event log
+// write ahead log of park and vacate events in fixed 24 byte records: lsn, floor, spot, kind, a span flag and a crc32c
+// of the rest, the flag is set on every record of one appendAll after the first, so an oversized vehicle's spots stay one span
+// gates add their record to a pending batch and wait, a single flusher writes the whole batch and forces it once,
+// so while one fsync runs the next batch fills up and its cost is shared by every gate waiting on it
+// the log is split in segments named by their first lsn, segments covered by a snapshot are deleted
+class ParkingEventLog implements Closeable {
+    public static final byte PARK = 1;
+    public static final byte VACATE = 2;
+
+    private static final int RECORD_SIZE = 24;
+    private static final int MAX_BATCH_RECORDS = 4096;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // called for every valid record in lsn order while the log is replayed
+    interface Visitor {
+        void onEvent(long lsn, byte kind, int floorNumber, int spotNumber, boolean joinsPrevious);
+    }
+
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingAvailable = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+    private final Thread flusher;
+    private ByteBuffer pending;
+    private ByteBuffer writing;
+    private FileChannel segment;
+    private long segmentFirstLsn;
+    private long nextLsn;
+    private long pendingLastLsn;
+    private long durableLsn;
+    private long rollBoundary;
+    private boolean rollRequested;
+    private boolean closed;
+    private IOException failure;
+
+    private ParkingEventLog(Path directory, long firstLsn) throws IOException {
+        this.directory = directory;
+        this.pending = ByteBuffer.allocateDirect(MAX_BATCH_RECORDS * RECORD_SIZE);
+        this.writing = ByteBuffer.allocateDirect(MAX_BATCH_RECORDS * RECORD_SIZE);
+        this.nextLsn = firstLsn;
+        this.pendingLastLsn = firstLsn - 1;
+        this.durableLsn = firstLsn - 1;
+        this.segment = openSegment(firstLsn);
+        this.segmentFirstLsn = firstLsn;
+        this.flusher = new Thread(this::flushLoop, "parking-event-log-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    // a new segment is started on every open, so a torn record at the end of an old segment is never appended to
+    public static ParkingEventLog open(Path directory, long firstLsn) throws IOException {
+        Files.createDirectories(directory);
+        ParkingEventLog log = new ParkingEventLog(directory, firstLsn);
+        log.flusher.start();
+        return log;
+    }
+
+    // returns once the record is on disk, with its lsn
+    public long append(byte kind, int floorNumber, int spotNumber) {
+        return appendAll(kind, floorNumber, new int[]{spotNumber});
+    }
+
+    // the records go into one batch, so they are written and forced together, returns the lsn of the last one
+    public long appendAll(byte kind, int floorNumber, int[] spotNumbers) {
+        if(spotNumbers.length == 0 || spotNumbers.length > MAX_BATCH_RECORDS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_BATCH_RECORDS + " records can be appended at once");
+        }
+        lock.lock();
+        try {
+            while(pending.remaining() < spotNumbers.length * RECORD_SIZE && !closed && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            checkWritable();
+
+            long lsn = 0;
+            for(int i = 0; i < spotNumbers.length; i++) {
+                lsn = nextLsn++;
+                int start = pending.position();
+                pending.putLong(lsn).putInt(floorNumber).putInt(spotNumbers[i]).put(kind).put((byte) (i == 0 ? 0 : 1)).put((byte) 0).put((byte) 0);
+                crc.reset();
+                crc.update(pending.duplicate().position(start).limit(start + RECORD_SIZE - 4));
+                pending.putInt((int) crc.getValue());
+            }
+            pendingLastLsn = lsn;
+            pendingAvailable.signal();
+
+            while(durableLsn < lsn && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            if(durableLsn < lsn) {
+                throw new IllegalStateException("Parking event log could not be written", failure);
+            }
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // starts a new segment and returns its first lsn, every earlier event is durable and already applied in memory
+    public long rollSegment() {
+        lock.lock();
+        try {
+            checkWritable();
+            rollRequested = true;
+            pendingAvailable.signal();
+            while(rollRequested && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            checkWritable();
+            return rollBoundary;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void deleteSegmentsBefore(long lsn) throws IOException {
+        List<Long> starts = segmentStarts(directory);
+        // a segment is covered when the next one starts at or before the lsn
+        for(int i = 0; i + 1 < starts.size() && starts.get(i + 1) <= lsn; i++) {
+            Files.deleteIfExists(segmentPath(directory, starts.get(i)));
+        }
+    }
+
+    // visits records with lsn above afterLsn, a segment is read up to its first torn or corrupt record
+    // only the last write before a crash can be torn and the next open always starts a new segment after it
+    public static long replay(Path directory, long afterLsn, Visitor visitor) throws IOException {
+        long lastLsn = afterLsn;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_BATCH_RECORDS * RECORD_SIZE);
+        for(long start : segmentStarts(directory)) {
+            lastLsn = replaySegment(segmentPath(directory, start), lastLsn, visitor, buffer);
+        }
+        return lastLsn;
+    }
+
+    private static long replaySegment(Path file, long afterLsn, Visitor visitor, ByteBuffer buffer) throws IOException {
+        long lastLsn = afterLsn;
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while(channel.read(buffer) > 0 || buffer.position() >= RECORD_SIZE) {
+                buffer.flip();
+                while(buffer.remaining() >= RECORD_SIZE) {
+                    int record = buffer.position();
+                    crc.reset();
+                    crc.update(buffer.duplicate().limit(record + RECORD_SIZE - 4));
+                    if(buffer.getInt(record + RECORD_SIZE - 4) != (int) crc.getValue()) {
+                        return lastLsn;
+                    }
+                    long lsn = buffer.getLong();
+                    int floorNumber = buffer.getInt();
+                    int spotNumber = buffer.getInt();
+                    byte kind = buffer.get();
+                    boolean joinsPrevious = buffer.get() != 0;
+                    buffer.position(record + RECORD_SIZE);
+                    if(lsn > lastLsn) {
+                        visitor.onEvent(lsn, kind, floorNumber, spotNumber, joinsPrevious);
+                        lastLsn = lsn;
+                    }
+                }
+                buffer.compact();
+            }
+        }
+        return lastLsn;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pendingAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.close();
+    }
+
+    private void flushLoop() {
+        while(true) {
+            ByteBuffer batch;
+            long lastLsn;
+            FileChannel channel;
+            lock.lock();
+            try {
+                while(pending.position() == 0 && !rollRequested && !closed) {
+                    pendingAvailable.awaitUninterruptibly();
+                }
+                if(pending.position() == 0 && !rollRequested && closed) {
+                    return;
+                }
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                lastLsn = pendingLastLsn;
+                channel = segment;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                batch.flip();
+                while(batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            batch.clear();
+
+            lock.lock();
+            try {
+                if(error == null && rollRequested) {
+                    try {
+                        // records appended while the batch was written have lsn above lastLsn and go to the new segment
+                        // a segment that got no record yet already starts at the boundary and is kept
+                        if(lastLsn + 1 != segmentFirstLsn) {
+                            segment = openSegment(lastLsn + 1);
+                            segmentFirstLsn = lastLsn + 1;
+                            channel.close();
+                        }
+                        rollBoundary = lastLsn + 1;
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                    rollRequested = false;
+                }
+                if(error != null) {
+                    failure = error;
+                } else {
+                    durableLsn = Math.max(durableLsn, lastLsn);
+                }
+                flushed.signalAll();
+                if(failure != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void checkWritable() {
+        if(failure != null) {
+            throw new IllegalStateException("Parking event log could not be written", failure);
+        }
+        if(closed) {
+            throw new IllegalStateException("Parking event log is closed");
+        }
+    }
+
+    // an existing segment is never truncated, it can only be left by an open whose first record did not become durable
+    // an empty one is removed, a torn one is kept aside, one holding records means the lsn is wrong and opening fails
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        Path file = segmentPath(directory, firstLsn);
+        if(Files.exists(file)) {
+            if(replaySegment(file, firstLsn - 1, (lsn, kind, floorNumber, spotNumber, joinsPrevious) -> {}, ByteBuffer.allocate(MAX_BATCH_RECORDS * RECORD_SIZE)) >= firstLsn) {
+                throw new IOException("Log segment " + file + " already holds records from lsn " + firstLsn);
+            }
+            if(Files.size(file) == 0) {
+                Files.delete(file);
+            } else {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".torn"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        // make the new file itself durable, not only its content
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // some platforms can not open a directory, the file content is still forced on every batch
+        }
+        return channel;
+    }
+
+    private static Path segmentPath(Path directory, long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+    }
+
+    private static List<Long> segmentStarts(Path directory) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for(Path file : files) {
+                String name = file.getFileName().toString();
+                starts.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(starts);
+        return starts;
+    }
+}
+
+// Class for parking state store
+// recovery loads the last occupancy snapshot and replays the log after it, then attaches a new log to the lot
+// a snapshot is one bit per spot, 100k spots take about 12 kb, so recovery is bounded by the log since the last snapshot
+class ParkingStateStore implements Closeable {
+    private static final int SNAPSHOT_MAGIC = 0x50534E50;
+    // snapshots that also keep which spots join the span of the spot before them
+    private static final int SNAPSHOT_SPANS_MAGIC = 0x50534E32;
+    private static final String SNAPSHOT_FILE = "occupancy.snapshot";
+
+    private final Path directory;
+    private final MultiFloorParkingLot parkingLot;
+    private final ParkingEventLog eventLog;
+    private ScheduledExecutorService snapshotScheduler;
+    private volatile IOException lastSnapshotFailure;
+
+    private ParkingStateStore(Path directory, MultiFloorParkingLot parkingLot, ParkingEventLog eventLog) {
+        this.directory = directory;
+        this.parkingLot = parkingLot;
+        this.eventLog = eventLog;
+    }
+
+    // the lot should be freshly built with the same floors and spots as before the restart
+    public static ParkingStateStore recover(Path directory, MultiFloorParkingLot parkingLot) throws IOException {
+        Files.createDirectories(directory);
+        long snapshotLsn = readSnapshot(directory, parkingLot);
+        long lastLsn = ParkingEventLog.replay(directory, snapshotLsn, (lsn, kind, floorNumber, spotNumber, joinsPrevious) ->
+                parkingLot.restoreOccupancy(floorNumber, spotNumber, kind == ParkingEventLog.PARK, joinsPrevious));
+
+        ParkingEventLog eventLog = ParkingEventLog.open(directory, lastLsn + 1);
+        parkingLot.setEventLog(eventLog);
+        return new ParkingStateStore(directory, parkingLot, eventLog);
+    }
+
+    // writes the occupancy of every floor and drops the log segments it covers
+    public synchronized void snapshot() throws IOException {
+        try {
+            writeSnapshot();
+            lastSnapshotFailure = null;
+        } catch (IOException e) {
+            lastSnapshotFailure = e;
+            throw e;
+        }
+    }
+
+    // null once a snapshot succeeded, scheduled snapshots keep their failure here
+    public IOException getLastSnapshotFailure() {
+        return lastSnapshotFailure;
+    }
+
+    private void writeSnapshot() throws IOException {
+        List<ParkingFloor> floors = parkingLot.getParkingFloors();
+        List<long[]> occupancy = new ArrayList<>();
+        List<long[]> joined = new ArrayList<>();
+        long boundary = parkingLot.rollEventLog(occupancy, joined);
+        int size = 4 + 8 + 4;
+        for(long[] words : occupancy) {
+            size += 4 + 4 + words.length * 8 * 2;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        // the bits hold everything below the boundary, anything newer that they also hold is replayed again,
+        // setting or clearing a bit twice changes nothing
+        buffer.putInt(SNAPSHOT_SPANS_MAGIC).putLong(boundary - 1).putInt(floors.size());
+        for(int i = 0; i < floors.size(); i++) {
+            buffer.putInt(floors.get(i).getFloorNumber()).putInt(floors.get(i).getSpots().size());
+            for(long word : occupancy.get(i)) {
+                buffer.putLong(word);
+            }
+            for(long word : joined.get(i)) {
+                buffer.putLong(word);
+            }
+        }
+        buffer.flip();
+
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        eventLog.deleteSegmentsBefore(boundary);
+    }
+
+    public synchronized void scheduleSnapshots(long interval, TimeUnit unit) {
+        if(snapshotScheduler != null) {
+            throw new IllegalStateException("Snapshots are already scheduled");
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "parking-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                // kept in lastSnapshotFailure, the log still holds every event and the next snapshot tries again
+            }
+        }, interval, interval, unit);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized(this) {
+            if(snapshotScheduler != null) {
+                snapshotScheduler.shutdownNow();
+            }
+        }
+        parkingLot.setEventLog(null);
+        eventLog.close();
+    }
+
+    private static long readSnapshot(Path directory, MultiFloorParkingLot parkingLot) throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if(!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        int magic = buffer.getInt();
+        if(magic != SNAPSHOT_MAGIC && magic != SNAPSHOT_SPANS_MAGIC) {
+            throw new IllegalStateException("Occupancy snapshot " + file + " is not a snapshot");
+        }
+        long lsn = buffer.getLong();
+        int numFloors = buffer.getInt();
+        for(int i = 0; i < numFloors; i++) {
+            ParkingFloor floor = parkingLot.getFloor(buffer.getInt());
+            int numSpots = buffer.getInt();
+            if(floor == null || floor.getSpots().size() != numSpots) {
+                throw new IllegalStateException("Occupancy snapshot does not match the parking lot layout");
+            }
+            int numWords = (numSpots + 63) >>> 6;
+            long[] occupied = new long[numWords];
+            long[] joined = new long[numWords];
+            buffer.asLongBuffer().get(occupied);
+            buffer.position(buffer.position() + numWords * 8);
+            if(magic == SNAPSHOT_SPANS_MAGIC) {
+                buffer.asLongBuffer().get(joined);
+                buffer.position(buffer.position() + numWords * 8);
+            }
+            // list order, so the spot before a joining spot is restored first
+            for(int word = 0; word < numWords; word++) {
+                long bits = occupied[word];
+                while(bits != 0) {
+                    int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    parkingLot.restoreOccupancy(floor.getFloorNumber(), floor.getSpots().get(slot).getSpotNumber(), true, (joined[word] & (1L << slot)) != 0);
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return lsn;
+    }
+}
+
+// Interface for parking event listener
+interface ParkingEventListener {
+    public void onParked(int floorNumber, ParkingSpot spot);
+
+    public void onVacated(int floorNumber, ParkingSpot spot);
+}
+
+// Class for occupancy analytics
+// keeps a rolling window of numBuckets time buckets per floor and vehicle type, memory does not grow with time
+// park and vacate only add to counters of the current bucket, a tick every bucket samples the lot counters,
+// moves to the next bucket and clears it, so nothing ever scans the spots
+// counts that land on a bucket just as the tick clears it are lost, which is fine for dashboards and pricing
+class OccupancyAnalytics implements ParkingEventListener, Closeable {
+    private static final int PARKS = 0;
+    private static final int VACATES = 1;
+    private static final int DWELLS = 2;
+    private static final int DWELL_MILLIS = 3;
+    private static final int OCCUPANCY_SAMPLE = 4;
+    private static final int SAMPLED = 5;
+    private static final int NUM_FIELDS = 6;
+
+    private final MultiFloorParkingLot parkingLot;
+    private final long bucketMillis;
+    private final int numBuckets;
+    private final int numFloors;
+    private final int numTypes;
+    private final LongSupplier clock;
+    private final AtomicLongArray counters;
+    private final AtomicLongArray[] parkTimesByFloor;
+    private volatile int currentBucket;
+    private ScheduledExecutorService ticker;
+
+    public OccupancyAnalytics(MultiFloorParkingLot parkingLot, long bucketMillis, int numBuckets) {
+        this(parkingLot, bucketMillis, numBuckets, System::currentTimeMillis);
+    }
+
+    public OccupancyAnalytics(MultiFloorParkingLot parkingLot, long bucketMillis, int numBuckets, LongSupplier clock) {
+        if(bucketMillis <= 0 || numBuckets < 2) {
+            throw new IllegalArgumentException("Bucket length should be positive and there should be at least 2 buckets");
+        }
+        this.parkingLot = parkingLot;
+        this.bucketMillis = bucketMillis;
+        this.numBuckets = numBuckets;
+        this.clock = clock;
+        this.numTypes = VehicleType.values().length;
+
+        int maxFloorNumber = -1;
+        for(ParkingFloor floor : parkingLot.getParkingFloors()) {
+            maxFloorNumber = Math.max(maxFloorNumber, floor.getFloorNumber());
+        }
+        this.numFloors = maxFloorNumber + 1;
+        this.counters = new AtomicLongArray(numBuckets * numFloors * numTypes * NUM_FIELDS);
+
+        // when each occupied spot was parked, for dwell times, one slot per spot number of the floor
+        this.parkTimesByFloor = new AtomicLongArray[numFloors];
+        for(ParkingFloor floor : parkingLot.getParkingFloors()) {
+            int maxSpotNumber = -1;
+            for(ParkingSpot spot : floor.getSpots()) {
+                maxSpotNumber = Math.max(maxSpotNumber, spot.getSpotNumber());
+            }
+            parkTimesByFloor[floor.getFloorNumber()] = new AtomicLongArray(maxSpotNumber + 1);
+        }
+    }
+
+    // ticks on a daemon thread and listens to the lot
+    public synchronized void start() {
+        if(ticker != null) {
+            throw new IllegalStateException("Occupancy analytics already started");
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occupancy-analytics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, bucketMillis, bucketMillis, TimeUnit.MILLISECONDS);
+        parkingLot.setEventListener(this);
+    }
+
+    @Override
+    public void onParked(int floorNumber, ParkingSpot spot) {
+        parkTimesByFloor[floorNumber].set(spot.getSpotNumber(), clock.getAsLong());
+        counters.incrementAndGet(index(currentBucket, floorNumber, spot.getSpotType(), PARKS));
+    }
+
+    @Override
+    public void onVacated(int floorNumber, ParkingSpot spot) {
+        int bucket = currentBucket;
+        counters.incrementAndGet(index(bucket, floorNumber, spot.getSpotType(), VACATES));
+        long parkedAt = parkTimesByFloor[floorNumber].getAndSet(spot.getSpotNumber(), 0);
+        // spots recovered after a restart have no park time
+        if(parkedAt != 0) {
+            counters.incrementAndGet(index(bucket, floorNumber, spot.getSpotType(), DWELLS));
+            counters.addAndGet(index(bucket, floorNumber, spot.getSpotType(), DWELL_MILLIS), clock.getAsLong() - parkedAt);
+        }
+    }
+
+    // closes the current bucket with a sample of the occupancy and starts the next one
+    public void tick() {
+        int bucket = currentBucket;
+        for(ParkingFloor floor : parkingLot.getParkingFloors()) {
+            for(VehicleType type : VehicleType.values()) {
+                counters.set(index(bucket, floor.getFloorNumber(), type, OCCUPANCY_SAMPLE), floor.getOccupiedSpotCount(type));
+                counters.set(index(bucket, floor.getFloorNumber(), type, SAMPLED), 1);
+            }
+        }
+        int next = (bucket + 1) % numBuckets;
+        int start = index(next, 0, VehicleType.values()[0], 0);
+        for(int i = start; i < start + numFloors * numTypes * NUM_FIELDS; i++) {
+            counters.set(i, 0);
+        }
+        currentBucket = next;
+    }
+
+    public long getWindowMillis() {
+        return bucketMillis * numBuckets;
+    }
+
+    public int getCurrentOccupancy(int floorNumber, VehicleType type) {
+        return parkingLot.getFloor(floorNumber).getOccupiedSpotCount(type);
+    }
+
+    // mean of the occupancy sampled at the end of every bucket in the window
+    public double getAverageOccupancy(int floorNumber, VehicleType type) {
+        long samples = sum(floorNumber, type, SAMPLED);
+        return samples == 0 ? getCurrentOccupancy(floorNumber, type) : (double) sum(floorNumber, type, OCCUPANCY_SAMPLE) / samples;
+    }
+
+    public double getAverageDwellMillis(int floorNumber, VehicleType type) {
+        long dwells = sum(floorNumber, type, DWELLS);
+        return dwells == 0 ? 0 : (double) sum(floorNumber, type, DWELL_MILLIS) / dwells;
+    }
+
+    public long getParks(int floorNumber, VehicleType type) {
+        return sum(floorNumber, type, PARKS);
+    }
+
+    // vehicles that left per spot per hour over the window
+    public double getTurnoverRate(int floorNumber, VehicleType type) {
+        int spots = parkingLot.getFloor(floorNumber).getTotalSpotCount(type);
+        double windowHours = getWindowMillis() / 3_600_000.0;
+        return spots == 0 ? 0 : sum(floorNumber, type, VACATES) / (spots * windowHours);
+    }
+
+    public double getAverageDwellMillis(VehicleType type) {
+        long dwells = 0;
+        long dwellMillis = 0;
+        for(ParkingFloor floor : parkingLot.getParkingFloors()) {
+            dwells += sum(floor.getFloorNumber(), type, DWELLS);
+            dwellMillis += sum(floor.getFloorNumber(), type, DWELL_MILLIS);
+        }
+        return dwells == 0 ? 0 : (double) dwellMillis / dwells;
+    }
+
+    @Override
+    public synchronized void close() {
+        parkingLot.setEventListener(null);
+        if(ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private long sum(int floorNumber, VehicleType type, int field) {
+        long total = 0;
+        for(int bucket = 0; bucket < numBuckets; bucket++) {
+            total += counters.get(index(bucket, floorNumber, type, field));
+        }
+        return total;
+    }
+
+    private int index(int bucket, int floorNumber, VehicleType type, int field) {
+        return ((bucket * numFloors + floorNumber) * numTypes + type.ordinal()) * NUM_FIELDS + field;
+    }
+}
+
+// Class for reservation
+class Reservation {
+    private final long reservationId;
+    private final int floorNumber;
+    private final VehicleType vehicleType;
+    private final long startTime;
+    private final long endTime;
+    private int spotNumber;
+    private boolean held;
+    private boolean checkedIn;
+
+    public Reservation(long reservationId, int floorNumber, VehicleType vehicleType, int spotNumber, long startTime, long endTime) {
+        this.reservationId = reservationId;
+        this.floorNumber = floorNumber;
+        this.vehicleType = vehicleType;
+        this.spotNumber = spotNumber;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public long getReservationId() {
+        return reservationId;
+    }
+
+    public int getFloorNumber() {
+        return floorNumber;
+    }
+
+    public VehicleType getVehicleType() {
+        return vehicleType;
+    }
+
+    public int getSpotNumber() {
+        return spotNumber;
+    }
+
+    public void setSpotNumber(int spotNumber) {
+        this.spotNumber = spotNumber;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public boolean isHeld() {
+        return held;
+    }
+
+    public void setHeld(boolean held) {
+        this.held = held;
+    }
+
+    public boolean isCheckedIn() {
+        return checkedIn;
+    }
+
+    public void setCheckedIn(boolean checkedIn) {
+        this.checkedIn = checkedIn;
+    }
+}
+
+// Class for spot timeline
+// reserved time slots of the spots of one vehicle type on one floor, kept slot major:
+// one bitset over the spots per time slot, so a window query ors the slots of the window 64 spots at a time
+// and stops at the first word with a spot that is free in every slot
+// slots live in a ring over the booking horizon, a slot is cleared the first time it is reused for a later time
+class SpotTimeline {
+    private final ParkingSpot[] spots;
+    private final Map<Integer, Integer> positionBySpotNumber;
+    private final int numWords;
+    private final long lastWordMask;
+    private final long[][] reservedBySlot;
+    private final long[] slotEpochs;
+
+    public SpotTimeline(List<ParkingSpot> spotList, int horizonSlots) {
+        this.spots = spotList.toArray(new ParkingSpot[0]);
+        this.positionBySpotNumber = new HashMap<>();
+        for(int position = 0; position < spots.length; position++) {
+            positionBySpotNumber.put(spots[position].getSpotNumber(), position);
+        }
+        this.numWords = Math.max(1, (spots.length + 63) >>> 6);
+        this.lastWordMask = spots.length % 64 == 0 && spots.length > 0 ? -1L : (1L << spots.length) - 1;
+        this.reservedBySlot = new long[horizonSlots][numWords];
+        this.slotEpochs = new long[horizonSlots];
+        Arrays.fill(this.slotEpochs, -1);
+    }
+
+    // first spot at or after fromPosition that is free in every slot of [fromSlot, toSlot), -1 when there is none
+    public int findFree(long fromSlot, long toSlot, int fromPosition) {
+        for(int word = fromPosition >>> 6; word < numWords; word++) {
+            long busy = word == fromPosition >>> 6 ? (1L << fromPosition) - 1 : 0;
+            for(long slot = fromSlot; slot < toSlot && busy != -1L; slot++) {
+                busy |= row(slot)[word];
+            }
+            long free = ~busy & (word == numWords - 1 ? lastWordMask : -1L);
+            if(free != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(free);
+            }
+        }
+        return -1;
+    }
+
+    public void mark(int position, long fromSlot, long toSlot, boolean reserved) {
+        long bit = 1L << position;
+        for(long slot = fromSlot; slot < toSlot; slot++) {
+            long[] words = row(slot);
+            words[position >>> 6] = reserved ? words[position >>> 6] | bit : words[position >>> 6] & ~bit;
+        }
+    }
+
+    public ParkingSpot getSpot(int position) {
+        return spots[position];
+    }
+
+    public int getPosition(int spotNumber) {
+        return positionBySpotNumber.get(spotNumber);
+    }
+
+    private long[] row(long slot) {
+        int ring = (int) (slot % reservedBySlot.length);
+        if(slotEpochs[ring] != slot) {
+            Arrays.fill(reservedBySlot[ring], 0);
+            slotEpochs[ring] = slot;
+        }
+        return reservedBySlot[ring];
+    }
+}
+
+// Class for reservation service
+// books spots for future windows on a timeline per floor and vehicle type
+// walk-ins honor bookings because a reserved spot is held, taken out of walk-in allocation, walkInGuardMillis
+// before the booking starts, the guard should cover a usual walk-in stay
+// a walk-in that overstays into the hold moves the booking to another spot free for its window
+class ReservationService {
+    private final MultiFloorParkingLot parkingLot;
+    private final long slotMillis;
+    private final int horizonSlots;
+    private final long walkInGuardMillis;
+    private final long noShowGraceMillis;
+    private final LongSupplier clock;
+    private final Map<Long, SpotTimeline> timelines = new HashMap<>();
+    private final Map<Long, Reservation> reservations = new HashMap<>();
+    private final PriorityQueue<Reservation> upcoming =
+            new PriorityQueue<>(Comparator.comparingLong(Reservation::getStartTime));
+    private long nextReservationId = 1;
+
+    public ReservationService(MultiFloorParkingLot parkingLot, long slotMillis, int horizonSlots, long walkInGuardMillis, long noShowGraceMillis, LongSupplier clock) {
+        if(slotMillis <= 0 || horizonSlots <= 0) {
+            throw new IllegalArgumentException("Slot length and horizon should be positive");
+        }
+        this.parkingLot = parkingLot;
+        this.slotMillis = slotMillis;
+        this.horizonSlots = horizonSlots;
+        this.walkInGuardMillis = walkInGuardMillis;
+        this.noShowGraceMillis = noShowGraceMillis;
+        this.clock = clock;
+
+        for(ParkingFloor floor : parkingLot.getParkingFloors()) {
+            for(VehicleType type : VehicleType.values()) {
+                List<ParkingSpot> spots = new ArrayList<>();
+                for(ParkingSpot spot : floor.getSpots()) {
+                    if(spot.getSpotType() == type) {
+                        spots.add(spot);
+                    }
+                }
+                timelines.put(timelineKey(floor.getFloorNumber(), type), new SpotTimeline(spots, horizonSlots));
+            }
+        }
+    }
+
+    // a spot that is not reserved at any time in the window, null when every spot is booked
+    public synchronized ParkingSpot findFreeSpot(int floorNumber, VehicleType type, long startTime, long endTime) {
+        SpotTimeline timeline = timeline(floorNumber, type);
+        int position = timeline.findFree(startSlot(startTime), endSlot(startTime, endTime), 0);
+        return position == -1 ? null : timeline.getSpot(position);
+    }
+
+    public synchronized Reservation reserve(int floorNumber, VehicleType type, long startTime, long endTime) {
+        SpotTimeline timeline = timeline(floorNumber, type);
+        long fromSlot = startSlot(startTime);
+        long toSlot = endSlot(startTime, endTime);
+        boolean holdNow = startTime - walkInGuardMillis <= clock.getAsLong();
+
+        int position = timeline.findFree(fromSlot, toSlot, 0);
+        // a booking inside the guard is held right away, so its spot should also be free of walk-ins now
+        while(position != -1 && holdNow && !parkingLot.holdSpot(floorNumber, timeline.getSpot(position).getSpotNumber())) {
+            position = timeline.findFree(fromSlot, toSlot, position + 1);
+        }
+        if(position == -1) {
+            throw new IllegalStateException("No free " + type + " spot on floor " + floorNumber + " for the requested window");
+        }
+
+        timeline.mark(position, fromSlot, toSlot, true);
+        Reservation reservation = new Reservation(nextReservationId++, floorNumber, type, timeline.getSpot(position).getSpotNumber(), startTime, endTime);
+        reservation.setHeld(holdNow);
+        reservations.put(reservation.getReservationId(), reservation);
+        if(!holdNow) {
+            upcoming.add(reservation);
+        }
+        return reservation;
+    }
+
+    public synchronized void cancel(long reservationId) {
+        Reservation reservation = reservations.remove(reservationId);
+        if(reservation == null) {
+            throw new IllegalStateException("No reservation " + reservationId);
+        }
+        if(reservation.isCheckedIn()) {
+            throw new IllegalStateException("Reservation " + reservationId + " is already checked in");
+        }
+        upcoming.remove(reservation);
+        unmark(reservation);
+        if(reservation.isHeld()) {
+            parkingLot.releaseHold(reservation.getFloorNumber(), reservation.getSpotNumber());
+        }
+    }
+
+    public synchronized ParkingSpot checkIn(long reservationId, Vehicle vehicle) {
+        Reservation reservation = reservations.get(reservationId);
+        if(reservation == null || reservation.isCheckedIn()) {
+            throw new IllegalStateException("No open reservation " + reservationId);
+        }
+        if(vehicle.getType() != reservation.getVehicleType()) {
+            throw new IllegalStateException("Reservation " + reservationId + " is for vehicle " + reservation.getVehicleType());
+        }
+        if(!reservation.isHeld() && !holdOrMove(reservation)) {
+            throw new IllegalStateException("Reserved spot for " + reservationId + " is not available yet");
+        }
+        upcoming.remove(reservation);
+        ParkingSpot spot = parkingLot.parkHeld(reservation.getFloorNumber(), reservation.getSpotNumber(), vehicle);
+        reservation.setCheckedIn(true);
+        reservations.remove(reservationId);
+        return spot;
+    }
+
+    // run periodically: holds spots of bookings entering the guard and frees the ones of no-shows
+    public synchronized void tick() {
+        long now = clock.getAsLong();
+        List<Reservation> notHeld = new ArrayList<>();
+        while(!upcoming.isEmpty() && upcoming.peek().getStartTime() - walkInGuardMillis <= now) {
+            Reservation reservation = upcoming.poll();
+            if(!holdOrMove(reservation)) {
+                notHeld.add(reservation);
+            }
+        }
+        // tried again on the next tick
+        upcoming.addAll(notHeld);
+
+        List<Long> noShows = new ArrayList<>();
+        for(Reservation reservation : reservations.values()) {
+            if(reservation.getStartTime() + noShowGraceMillis < now) {
+                noShows.add(reservation.getReservationId());
+            }
+        }
+        for(long reservationId : noShows) {
+            cancel(reservationId);
+        }
+    }
+
+    public synchronized Reservation getReservation(long reservationId) {
+        return reservations.get(reservationId);
+    }
+
+    private boolean holdOrMove(Reservation reservation) {
+        if(parkingLot.holdSpot(reservation.getFloorNumber(), reservation.getSpotNumber())) {
+            reservation.setHeld(true);
+            return true;
+        }
+        SpotTimeline timeline = timeline(reservation.getFloorNumber(), reservation.getVehicleType());
+        long fromSlot = startSlot(reservation.getStartTime());
+        long toSlot = endSlot(reservation.getStartTime(), reservation.getEndTime());
+        int position = timeline.findFree(fromSlot, toSlot, 0);
+        while(position != -1 && !parkingLot.holdSpot(reservation.getFloorNumber(), timeline.getSpot(position).getSpotNumber())) {
+            position = timeline.findFree(fromSlot, toSlot, position + 1);
+        }
+        if(position == -1) {
+            return false;
+        }
+        unmark(reservation);
+        timeline.mark(position, fromSlot, toSlot, true);
+        reservation.setSpotNumber(timeline.getSpot(position).getSpotNumber());
+        reservation.setHeld(true);
+        return true;
+    }
+
+    private void unmark(Reservation reservation) {
+        SpotTimeline timeline = timeline(reservation.getFloorNumber(), reservation.getVehicleType());
+        timeline.mark(timeline.getPosition(reservation.getSpotNumber()), startSlot(reservation.getStartTime()),
+                endSlot(reservation.getStartTime(), reservation.getEndTime()), false);
+    }
+
+    // slots that already passed are not kept, a window is cut to start at the current slot
+    private long startSlot(long startTime) {
+        return Math.max(startTime, clock.getAsLong()) / slotMillis;
+    }
+
+    private long endSlot(long startTime, long endTime) {
+        long now = clock.getAsLong();
+        if(endTime <= startTime) {
+            throw new IllegalArgumentException("Reservation should end after it starts");
+        }
+        long endSlot = (endTime + slotMillis - 1) / slotMillis;
+        if(endSlot - now / slotMillis > horizonSlots) {
+            throw new IllegalArgumentException("Reservation ends beyond the booking horizon");
+        }
+        return Math.max(endSlot, startSlot(startTime));
+    }
+
+    private SpotTimeline timeline(int floorNumber, VehicleType type) {
+        SpotTimeline timeline = timelines.get(timelineKey(floorNumber, type));
+        if(timeline == null) {
+            throw new IllegalArgumentException("Floor " + floorNumber + " does not exist");
+        }
+        return timeline;
+    }
+
+    private static long timelineKey(int floorNumber, VehicleType type) {
+        return ((long) floorNumber << 8) | type.ordinal();
+    }
+}
@@ -0,0 +1,74 @@
+package com.sparklesimply.snakeladdergame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DiceBenchmark {
+
+    private static final int BLOCK_SIZE = 1024;
+
+    @State(Scope.Thread)
+    public static class ThreadDice {
+        final Dice dice = new Dice();
+        final SplittableRandomDice splittableRandomDice = new SplittableRandomDice();
+        final ThreadLocalRandomDice threadLocalRandomDice = new ThreadLocalRandomDice();
+        final ReplayableDice replayableDice = new ReplayableDice(42);
+        final int[] rolls = new int[BLOCK_SIZE];
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedDice {
+        final Dice dice = new Dice();
+    }
+
+    @Benchmark
+    public int roll(ThreadDice state) {
+        return state.dice.roll();
+    }
+
+    @Benchmark
+    public int rollSplittableRandom(ThreadDice state) {
+        return state.splittableRandomDice.roll();
+    }
+
+    @Benchmark
+    public int rollThreadLocalRandom(ThreadDice state) {
+        return state.threadLocalRandomDice.roll();
+    }
+
+    @Benchmark
+    public int rollReplayable(ThreadDice state) {
+        return state.replayableDice.roll();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK_SIZE)
+    public int[] rollBlockSplittableRandom(ThreadDice state) {
+        state.splittableRandomDice.roll(state.rolls, 0, BLOCK_SIZE);
+        return state.rolls;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK_SIZE)
+    public int[] rollBlockReplayable(ThreadDice state) {
+        state.replayableDice.roll(state.rolls, 0, BLOCK_SIZE);
+        return state.rolls;
+    }
+
+    // every thread rolls the same dice, as all players of a game do with GameService defaults
+    @Benchmark
+    @Threads(4)
+    public int rollShared(SharedDice state) {
+        return state.dice.roll();
+    }
+}
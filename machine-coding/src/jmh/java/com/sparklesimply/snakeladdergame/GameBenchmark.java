@@ -0,0 +1,82 @@
+package com.sparklesimply.snakeladdergame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GameBenchmark {
+
+    @Param({"100", "1000"})
+    int boardSize;
+
+    @Param({"0.05", "0.2"})
+    double density;
+
+    @Param({"2", "4"})
+    int numPlayers;
+
+    private GameBoard board;
+    private SimulationEngine engine;
+    private PrintStream out;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        board = BoardGenerator.generate(boardSize, density, 42);
+        board.compile();
+        engine = new SimulationEngine(board, numPlayers);
+    }
+
+    // startGame prints every turn by default, console output is discarded so only formatting and the loop are measured
+    @Setup(Level.Trial)
+    public void silenceOutput() {
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void restoreOutput() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public List<Player> startGame() {
+        List<Player> players = new ArrayList<>(numPlayers);
+        for(int i = 0; i < numPlayers; i++) {
+            players.add(new Player("Player" + i));
+        }
+        new GameService(board, players).startGame();
+        return players;
+    }
+
+    @Benchmark
+    public List<Player> startGameNoOpSink() {
+        List<Player> players = new ArrayList<>(numPlayers);
+        for(int i = 0; i < numPlayers; i++) {
+            players.add(new Player("Player" + i));
+        }
+        new GameService(board, players, new SplittableRandomDice(), NoOpTurnEventSink.INSTANCE).startGame();
+        return players;
+    }
+
+    @Benchmark
+    public SimulationResult simulateGame() {
+        return engine.run(1, seed++);
+    }
+}
@@ -0,0 +1,53 @@
+package com.sparklesimply.snakeladdergame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoveResolutionBenchmark {
+    private static final int NUM_POSITIONS = 1024;
+
+    @Param({"100", "100000", "10000000"})
+    int boardSize;
+
+    @Param({"0.01", "0.05", "0.2"})
+    double density;
+
+    @Param({"false", "true"})
+    boolean compiled;
+
+    private GameBoard board;
+    private int[] positions;
+    private int index;
+
+    @Setup
+    public void setup() {
+        board = BoardGenerator.generate(boardSize, density, 42);
+        if(compiled) {
+            board.compile();
+        }
+
+        SplittableRandom random = new SplittableRandom(7);
+        positions = new int[NUM_POSITIONS];
+        for(int i = 0; i < NUM_POSITIONS; i++) {
+            positions[i] = random.nextInt(1, board.getBoardSize() + 1);
+        }
+    }
+
+    @Benchmark
+    public int getNextPosition() {
+        index = (index + 1) & (NUM_POSITIONS - 1);
+        return board.getNextPosition(positions[index]);
+    }
+}
@@ -0,0 +1,43 @@
+package com.sparklesimply.snakeladdergame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SimulationBenchmark {
+
+    @Param({"100", "1000"})
+    int boardSize;
+
+    @Param({"0.05", "0.2"})
+    double density;
+
+    @Param({"100000"})
+    int numGames;
+
+    private SimulationEngine engine;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        GameBoard board = BoardGenerator.generate(boardSize, density, 42);
+        board.compile();
+        engine = new SimulationEngine(board, 2);
+    }
+
+    // runs across all cores of the common fork-join pool
+    @Benchmark
+    public SimulationResult run() {
+        return engine.run(numGames, seed++);
+    }
+}
@@ -0,0 +1,43 @@
+package com.sparklesimply.snakeladdergame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TournamentBenchmark {
+    private static final int MAX_ROUNDS = 1_000_000;
+
+    @Param({"1000"})
+    int boardSize;
+
+    @Param({"0.05"})
+    double density;
+
+    @Param({"1000", "50000"})
+    int numPlayers;
+
+    private GameBoard board;
+
+    @Setup
+    public void setup() {
+        board = BoardGenerator.generate(boardSize, density, 42);
+        board.compile();
+    }
+
+    @Benchmark
+    public PlayerStates playToCompletion() {
+        TournamentGame game = new TournamentGame(board, numPlayers);
+        game.playToCompletion(MAX_ROUNDS);
+        return game.getPlayerStates();
+    }
+}
@@ -1,5 +1,6 @@
 package com.sparklesimply;
 
+import com.sparklesimply.snakeladdergame.GameLoadGenerator;
 import com.sparklesimply.snakeladdergame.SnakeLadderGameDemo;
 
 public class App {
@@ -8,6 +9,8 @@ public class App {
 
         if(moduleToBeExecuted.equals("snakeladdergame")) {
             SnakeLadderGameDemo.execute();
+        } else if(moduleToBeExecuted.equals("snakeladderload")) {
+            GameLoadGenerator.execute();
         } else {
             System.out.println("Hello! provide module to be executed");
         }
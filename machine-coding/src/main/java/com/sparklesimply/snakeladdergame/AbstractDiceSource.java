@@ -0,0 +1,39 @@
+package com.sparklesimply.snakeladdergame;
+
+public abstract class AbstractDiceSource implements DiceSource {
+    protected static final int DEFAULT_NUM_DICE = 1;
+    protected static final int DEFAULT_FACES = 6;
+
+    protected final int numDice;
+    protected final int faces;
+
+    protected AbstractDiceSource(int numDice, int faces) {
+        if(numDice <= 0) {
+            throw new IllegalArgumentException("Number of dice should be positive");
+        }
+        if(faces <= 0) {
+            throw new IllegalArgumentException("Number of faces should be positive");
+        }
+        if((long) numDice * faces > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maximum roll should fit in an int");
+        }
+        this.numDice = numDice;
+        this.faces = faces;
+    }
+
+    @Override
+    public int getNumDice() {
+        return numDice;
+    }
+
+    @Override
+    public int getFaces() {
+        return faces;
+    }
+
+    protected static void checkBounds(int[] rolls, int offset, int length) {
+        if(offset < 0 || length < 0 || offset > rolls.length - length) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + (offset + length) + ") out of bounds for length " + rolls.length);
+        }
+    }
+}
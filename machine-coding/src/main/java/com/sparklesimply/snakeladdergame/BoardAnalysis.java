@@ -0,0 +1,177 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.Arrays;
+
+// derived data of a compiled board for a given dice, computed once in linear time over squares
+public class BoardAnalysis {
+    public static final int UNWINNABLE = -1;
+
+    private final int boardSize;
+    private final int minRoll;
+    private final int maxRoll;
+    private final long[] reachable;
+    // minimum rolls to reach the last square from every square a player can stand on
+    private final int[] minRollsToWin;
+    private final int numReachable;
+    private final int numUnwinnable;
+    private final int firstUnwinnable;
+
+    private BoardAnalysis(GameBoard board, int minRoll, int maxRoll, long[] reachable, int[] minRollsToWin) {
+        this.boardSize = board.getBoardSize();
+        this.minRoll = minRoll;
+        this.maxRoll = maxRoll;
+        this.reachable = reachable;
+        this.minRollsToWin = minRollsToWin;
+
+        int reachableSquares = 0;
+        int unwinnableSquares = 0;
+        int firstUnwinnableSquare = UNWINNABLE;
+        for(int square = 0; square <= boardSize; square++) {
+            if(isReachable(square)) {
+                reachableSquares++;
+                if(minRollsToWin[square] == UNWINNABLE) {
+                    unwinnableSquares++;
+                    if(firstUnwinnableSquare == UNWINNABLE) {
+                        firstUnwinnableSquare = square;
+                    }
+                }
+            }
+        }
+        this.numReachable = reachableSquares;
+        this.numUnwinnable = unwinnableSquares;
+        this.firstUnwinnable = firstUnwinnableSquare;
+    }
+
+    static BoardAnalysis analyze(GameBoard board, int numDice, int faces) {
+        if(numDice <= 0 || faces <= 0) {
+            throw new IllegalArgumentException("Number of dice and faces should be positive");
+        }
+        board.compile();
+        int boardSize = board.getBoardSize();
+        int minRoll = numDice;
+        int maxRoll = numDice * faces;
+        int[] queue = new int[boardSize + 1];
+
+        // dense bitmap of jump starts, so only squares with a jump go through the board lookup
+        int[] starts = board.getJumpStarts();
+        long[] isJumpStart = new long[(boardSize >>> 6) + 1];
+        for(int start : starts) {
+            if(start >= 0 && start <= boardSize) {
+                isJumpStart[start >>> 6] |= 1L << start;
+            }
+        }
+
+        // forward breadth first search from the start square over squares a player can stand on
+        long[] reachable = new long[(boardSize >>> 6) + 1];
+        int head = 0;
+        int tail = 0;
+        reachable[0] |= 1L;
+        queue[tail++] = 0;
+        while(head < tail) {
+            int square = queue[head++];
+            for(int roll = minRoll; roll <= maxRoll && square + roll <= boardSize; roll++) {
+                int landing = square + roll;
+                int next = isSet(isJumpStart, landing) ? board.getNextPosition(landing) : landing;
+                if(next >= 0 && next <= boardSize && !isSet(reachable, next)) {
+                    reachable[next >>> 6] |= 1L << next;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        // backward breadth first search from the last square, a square is entered either directly
+        // or through any jump ending on it, so jump starts are grouped by their destination first
+        long[] byDestination = new long[starts.length];
+        for(int i = 0; i < starts.length; i++) {
+            byDestination[i] = ((long) board.getNextPosition(starts[i]) << 32) | (starts[i] & 0xffffffffL);
+        }
+        Arrays.sort(byDestination);
+        IntIntHashMap firstJumpTo = new IntIntHashMap(starts.length);
+        long[] isJumpDestination = new long[(boardSize >>> 6) + 1];
+        for(int i = starts.length - 1; i >= 0; i--) {
+            int destination = (int) (byDestination[i] >> 32);
+            firstJumpTo.put(destination, i);
+            if(destination >= 0 && destination <= boardSize) {
+                isJumpDestination[destination >>> 6] |= 1L << destination;
+            }
+        }
+
+        int[] minRollsToWin = new int[boardSize + 1];
+        Arrays.fill(minRollsToWin, UNWINNABLE);
+        head = 0;
+        tail = 0;
+        minRollsToWin[boardSize] = 0;
+        queue[tail++] = boardSize;
+        while(head < tail) {
+            int square = queue[head++];
+            int rolls = minRollsToWin[square] + 1;
+
+            // landing on square itself unless a jump starts there
+            if(!isSet(isJumpStart, square)) {
+                tail = visitPredecessors(isJumpStart, square, minRoll, maxRoll, rolls, minRollsToWin, queue, tail);
+            }
+            // landing on any jump start that ends on square
+            if(isSet(isJumpDestination, square)) {
+                for(int i = firstJumpTo.get(square, starts.length); i < starts.length && (int) (byDestination[i] >> 32) == square; i++) {
+                    tail = visitPredecessors(isJumpStart, (int) byDestination[i], minRoll, maxRoll, rolls, minRollsToWin, queue, tail);
+                }
+            }
+        }
+
+        return new BoardAnalysis(board, minRoll, maxRoll, reachable, minRollsToWin);
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static int visitPredecessors(long[] isJumpStart, int landing, int minRoll, int maxRoll, int rolls, int[] minRollsToWin, int[] queue, int tail) {
+        for(int roll = minRoll; roll <= maxRoll && landing - roll >= 0; roll++) {
+            int from = landing - roll;
+            if(minRollsToWin[from] == UNWINNABLE && !isSet(isJumpStart, from)) {
+                minRollsToWin[from] = rolls;
+                queue[tail++] = from;
+            }
+        }
+        return tail;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getMinRoll() {
+        return minRoll;
+    }
+
+    public int getMaxRoll() {
+        return maxRoll;
+    }
+
+    // squares a player can stand on after some sequence of rolls from the start
+    public boolean isReachable(int square) {
+        return square >= 0 && square <= boardSize && isSet(reachable, square);
+    }
+
+    // UNWINNABLE when the last square can not be reached from square or nobody can stand on it
+    public int getMinRollsToWin(int square) {
+        return minRollsToWin[square];
+    }
+
+    public boolean isWinnable() {
+        return isReachable(boardSize);
+    }
+
+    public int getNumReachable() {
+        return numReachable;
+    }
+
+    // reachable squares a player can never leave towards the last square
+    public int getNumUnwinnable() {
+        return numUnwinnable;
+    }
+
+    public int getFirstUnwinnable() {
+        return firstUnwinnable;
+    }
+}
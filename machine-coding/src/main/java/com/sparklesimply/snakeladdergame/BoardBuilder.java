@@ -0,0 +1,116 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// collects a layout, validates it and returns a compiled board with its analysis cached
+public class BoardBuilder {
+    private static final int MAX_REPORTED_PROBLEMS = 10;
+
+    private final int boardSize;
+    private final IntIntHashMap snakes;
+    private final IntIntHashMap ladders;
+    private final List<String> problems;
+    private int numProblems;
+    private int numDice = 1;
+    private int faces = 6;
+
+    public BoardBuilder() {
+        this(100);
+    }
+
+    public BoardBuilder(int boardSize) {
+        if(boardSize <= 1) {
+            throw new IllegalArgumentException("Board size should be at least 2");
+        }
+        this.boardSize = boardSize;
+        this.snakes = new IntIntHashMap();
+        this.ladders = new IntIntHashMap();
+        this.problems = new ArrayList<>();
+    }
+
+    public BoardBuilder withDice(int numDice, int faces) {
+        if(numDice <= 0 || faces <= 0) {
+            throw new IllegalArgumentException("Number of dice and faces should be positive");
+        }
+        this.numDice = numDice;
+        this.faces = faces;
+        return this;
+    }
+
+    public BoardBuilder addSnake(int head, int tail) {
+        if(head <= 1 || head >= boardSize) {
+            problem("Snake head " + head + " should be between 2 and " + (boardSize - 1));
+        } else if(tail < 1 || tail >= head) {
+            problem("Snake at " + head + " should end between 1 and " + (head - 1) + " but ends at " + tail);
+        } else if(!checkFree(head)) {
+            snakes.put(head, tail);
+        }
+        return this;
+    }
+
+    public BoardBuilder addLadder(int start, int end) {
+        if(start < 1 || start >= boardSize) {
+            problem("Ladder start " + start + " should be between 1 and " + (boardSize - 1));
+        } else if(end <= start || end > boardSize) {
+            problem("Ladder at " + start + " should end between " + (start + 1) + " and " + boardSize + " but ends at " + end);
+        } else if(!checkFree(start)) {
+            ladders.put(start, end);
+        }
+        return this;
+    }
+
+    // bounds and overlaps are checked while adding, cycles while compiling, then one pass over all squares
+    // finds whether the last square can be reached and whether any reachable square can never win
+    public GameBoard build() {
+        throwIfProblems();
+
+        GameBoard board = new GameBoard(boardSize);
+        for(int head : snakes.keys()) {
+            board.addSnakes(head, snakes.get(head, head));
+        }
+        for(int start : ladders.keys()) {
+            board.addLadders(start, ladders.get(start, start));
+        }
+        try {
+            board.compile();
+        } catch (IllegalStateException e) {
+            problem(e.getMessage());
+            throwIfProblems();
+        }
+
+        BoardAnalysis analysis = BoardAnalysis.analyze(board, numDice, faces);
+        if(!analysis.isWinnable()) {
+            problem("Last square " + boardSize + " can not be reached from the start");
+        } else if(analysis.getNumUnwinnable() > 0) {
+            problem(analysis.getNumUnwinnable() + " reachable squares can never reach the last square, first one is " + analysis.getFirstUnwinnable());
+        }
+        throwIfProblems();
+
+        board.setAnalysis(analysis);
+        return board;
+    }
+
+    // true if a snake or ladder already starts on square
+    private boolean checkFree(int square) {
+        if(snakes.containsKey(square) || ladders.containsKey(square)) {
+            problem("More than one snake or ladder starts at " + square);
+            return true;
+        }
+        return false;
+    }
+
+    private void problem(String message) {
+        numProblems++;
+        if(problems.size() < MAX_REPORTED_PROBLEMS) {
+            problems.add(message);
+        }
+    }
+
+    private void throwIfProblems() {
+        if(numProblems > 0) {
+            String more = numProblems > problems.size() ? "; and " + (numProblems - problems.size()) + " more" : "";
+            throw new IllegalArgumentException("Invalid board: " + String.join("; ", problems) + more);
+        }
+    }
+}
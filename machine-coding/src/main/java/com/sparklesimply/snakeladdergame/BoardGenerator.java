@@ -0,0 +1,59 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.SplittableRandom;
+
+public class BoardGenerator {
+    private static final int DEFAULT_BOARD_SIZE = 100;
+    private static final double MAX_DENSITY = 0.5;
+    private static final int MAX_ATTEMPTS = 64;
+
+    private BoardGenerator() {
+    }
+
+    public static GameBoard generate(double density, long seed) {
+        return generate(DEFAULT_BOARD_SIZE, density, seed);
+    }
+
+    // places about density * board size snakes and ladders, no jump ends on another jump so boards never chain or loop
+    public static GameBoard generate(int boardSize, double density, long seed) {
+        if(density < 0 || density > MAX_DENSITY) {
+            throw new IllegalArgumentException("Density should be between 0 and " + MAX_DENSITY);
+        }
+        if(boardSize < 3) {
+            throw new IllegalArgumentException("Board size should be at least 3");
+        }
+
+        GameBoard board = new GameBoard(boardSize);
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // jumps start on squares 2 to boardSize - 1, so square 1 and the last square are always free
+        int numJumps = (int) (density * (boardSize - 2));
+        IntIntHashMap jumpStarts = new IntIntHashMap(numJumps);
+        int[] starts = new int[numJumps];
+        for(int count = 0; count < numJumps; ) {
+            int square = random.nextInt(2, boardSize);
+            if(!jumpStarts.containsKey(square)) {
+                jumpStarts.put(square, count);
+                starts[count++] = square;
+            }
+        }
+
+        for(int i = 0; i < numJumps; i++) {
+            int start = starts[i];
+            boolean isSnake = i % 2 == 0;
+            for(int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                int end = isSnake ? random.nextInt(1, start) : random.nextInt(start + 1, boardSize + 1);
+                if(!jumpStarts.containsKey(end)) {
+                    if(isSnake) {
+                        board.addSnakes(start, end);
+                    } else {
+                        board.addLadders(start, end);
+                    }
+                    break;
+                }
+            }
+        }
+
+        return board;
+    }
+}
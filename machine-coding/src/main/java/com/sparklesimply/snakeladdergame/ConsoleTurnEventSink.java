@@ -0,0 +1,41 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.io.PrintStream;
+
+// prints the moves in the format of the problem statement, names are only looked up here
+public class ConsoleTurnEventSink implements TurnEventSink {
+    private final PlayerStates players;
+    private final PrintStream out;
+    private final StringBuilder line;
+
+    public ConsoleTurnEventSink(PlayerStates players) {
+        this(players, System.out);
+    }
+
+    public ConsoleTurnEventSink(PlayerStates players, PrintStream out) {
+        this.players = players;
+        this.out = out;
+        this.line = new StringBuilder();
+    }
+
+    @Override
+    public void onGameStart(int numPlayers, int boardSize) {
+    }
+
+    @Override
+    public void onTurn(int playerIndex, int diceValue, int fromPosition, int toPosition, int jump) {
+        line.setLength(0);
+        line.append(players.getName(playerIndex))
+                .append(" rolled a ").append(diceValue)
+                .append(" and moved from ").append(fromPosition)
+                .append(" to ").append(toPosition);
+        out.println(line);
+    }
+
+    @Override
+    public void onGameEnd(int winnerIndex) {
+        line.setLength(0);
+        line.append(players.getName(winnerIndex)).append(" wins the game!");
+        out.println(line);
+    }
+}
@@ -2,15 +2,32 @@ package com.sparklesimply.snakeladdergame;
 
 import java.util.Random;
 
-public class Dice {
-    private static final int MIN = 1;
-    private static final int MAX = 6;
+public class Dice extends AbstractDiceSource {
     private final Random random;
 
     public Dice() {
+        this(DEFAULT_NUM_DICE, DEFAULT_FACES);
+    }
+
+    public Dice(int numDice, int faces) {
+        super(numDice, faces);
         random = new Random();
     }
+
+    @Override
     public int roll() {
-        return random.nextInt(MAX) + MIN;
+        int sum = numDice;
+        for(int i = 0; i < numDice; i++) {
+            sum += random.nextInt(faces);
+        }
+        return sum;
+    }
+
+    @Override
+    public void roll(int[] rolls, int offset, int length) {
+        checkBounds(rolls, offset, length);
+        for(int i = offset; i < offset + length; i++) {
+            rolls[i] = roll();
+        }
     }
 }
@@ -0,0 +1,22 @@
+package com.sparklesimply.snakeladdergame;
+
+public interface DiceSource {
+
+    // sum of all dice of a single roll
+    int roll();
+
+    // fills rolls[offset] to rolls[offset + length - 1] in one call so callers can pre-generate rolls in blocks
+    void roll(int[] rolls, int offset, int length);
+
+    int getNumDice();
+
+    int getFaces();
+
+    default int getMinRoll() {
+        return getNumDice();
+    }
+
+    default int getMaxRoll() {
+        return getNumDice() * getFaces();
+    }
+}
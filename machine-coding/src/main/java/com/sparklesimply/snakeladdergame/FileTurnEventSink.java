@@ -0,0 +1,84 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// appends turn events to a binary log through a memory mapped window, an existing log is continued
+public class FileTurnEventSink implements TurnEventSink, Closeable {
+    private static final int RECORDS_PER_WINDOW = 64 * 1024;
+    private static final long WINDOW_SIZE = (long) TurnLog.RECORD_SIZE * RECORDS_PER_WINDOW;
+
+    private final FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    public FileTurnEventSink(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if(channel.size() == 0) {
+                map(0);
+                append(TurnLog.HEADER, TurnEventSink.NO_JUMP, TurnLog.MAGIC, TurnLog.VERSION, 0, 0);
+            } else {
+                position = TurnLog.read(channel, (type, jump, playerIndex, diceValue, fromPosition, toPosition) -> true);
+                map(position);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void onGameStart(int numPlayers, int boardSize) {
+        append(TurnLog.GAME_START, TurnEventSink.NO_JUMP, numPlayers, boardSize, 0, 0);
+    }
+
+    @Override
+    public void onTurn(int playerIndex, int diceValue, int fromPosition, int toPosition, int jump) {
+        append(TurnLog.TURN, jump, playerIndex, diceValue, fromPosition, toPosition);
+    }
+
+    @Override
+    public void onGameEnd(int winnerIndex) {
+        append(TurnLog.GAME_END, TurnEventSink.NO_JUMP, winnerIndex, 0, 0, 0);
+    }
+
+    public void flush() {
+        window.force();
+    }
+
+    // cuts the file back to the written records, mapped windows always extend it past them
+    @Override
+    public void close() throws IOException {
+        try {
+            window.force();
+            channel.truncate(position);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void append(byte type, int jump, int playerIndex, int diceValue, int fromPosition, int toPosition) {
+        if(position + TurnLog.RECORD_SIZE > windowStart + WINDOW_SIZE) {
+            try {
+                window.force();
+                map(position);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        TurnLog.putRecord(window, (int) (position - windowStart), type, jump, playerIndex, diceValue, fromPosition, toPosition);
+        position += TurnLog.RECORD_SIZE;
+    }
+
+    private void map(long start) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_WRITE, start, WINDOW_SIZE);
+        windowStart = start;
+    }
+}
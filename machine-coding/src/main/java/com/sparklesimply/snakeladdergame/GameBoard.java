@@ -1,52 +1,178 @@
 package com.sparklesimply.snakeladdergame;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class GameBoard {
-    private static final int BOARD_SIZE = 100;
-    private final Map<Integer, Integer> snakes;
-    private final Map<Integer, Integer> ladders;
+    private static final int DEFAULT_BOARD_SIZE = 100;
+    // boards up to this size compile into a dense table, bigger boards keep only resolved jumps
+    private static final int MAX_DENSE_BOARD_SIZE = 1 << 22;
+    // marks a jump start whose chain is being resolved, positions never take this value
+    private static final int RESOLVING = Integer.MIN_VALUE;
+
+    private final int boardSize;
+    private final IntIntHashMap snakes;
+    private final IntIntHashMap ladders;
+    private int[] nextPositions;
+    private IntIntHashMap resolvedJumps;
+    private BoardAnalysis analysis;
 
     public GameBoard() {
-        snakes = new HashMap<>();
-        ladders = new HashMap<>();
+        this(DEFAULT_BOARD_SIZE);
+    }
+
+    public GameBoard(int boardSize) {
+        if(boardSize <= 0) {
+            throw new IllegalArgumentException("Board size should be positive");
+        }
+        this.boardSize = boardSize;
+        snakes = new IntIntHashMap();
+        ladders = new IntIntHashMap();
     }
 
     public void addSnakes(int head, int tail) {
+        checkNotCompiled();
         snakes.put(head, tail);
     }
 
     public void addLadders(int start, int end) {
+        checkNotCompiled();
         ladders.put(start, end);
     }
 
-    public int getNextPosition(int currentPosition) {
-        int nextPosition = currentPosition;
+    // resolves final destination of every square once, board can not be modified afterwards
+    public void compile() {
+        if(isCompiled()) {
+            return;
+        }
+
+        // only jump starts move a player, so only they need resolving, every chain is walked once
+        IntIntHashMap jumps = new IntIntHashMap(snakes.size() + ladders.size());
+        int[] chain = new int[16];
+        for(int[] starts : new int[][]{snakes.keys(), ladders.keys()}) {
+            for(int start : starts) {
+                int length = 0;
+                int position = start;
+                while(isJumpStart(position) && !jumps.containsKey(position)) {
+                    if(length == chain.length) {
+                        chain = Arrays.copyOf(chain, length * 2);
+                    }
+                    chain[length++] = position;
+                    jumps.put(position, RESOLVING);
+                    position = jumpFrom(position);
+                }
 
-        // check if snake is present on next position
-        if(snakes.containsKey(nextPosition)) {
-            nextPosition = nextPosition - snakes.get(nextPosition);
+                int destination = isJumpStart(position) ? jumps.get(position, position) : position;
+                if(destination == RESOLVING) {
+                    throw new IllegalStateException("Snakes and ladders form an infinite loop starting at position " + start);
+                }
+                for(int i = 0; i < length; i++) {
+                    jumps.put(chain[i], destination);
+                }
+            }
         }
 
-        // check if ladder is present on next position
-        if(ladders.containsKey(nextPosition)) {
-            nextPosition = nextPosition + ladders.get(nextPosition);
+        if(boardSize <= MAX_DENSE_BOARD_SIZE) {
+            int[] table = new int[boardSize + 1];
+            for(int position = 0; position <= boardSize; position++) {
+                table[position] = position;
+            }
+            for(int position : jumps.keys()) {
+                if(position >= 0 && position <= boardSize) {
+                    table[position] = jumps.get(position, position);
+                }
+            }
+            nextPositions = table;
+        }
+        resolvedJumps = jumps;
+    }
+
+    public boolean isCompiled() {
+        return resolvedJumps != null;
+    }
+
+    public int getNextPosition(int currentPosition) {
+        if(nextPositions != null && currentPosition >= 0 && currentPosition <= boardSize) {
+            return nextPositions[currentPosition];
         }
+        if(resolvedJumps != null) {
+            return resolvedJumps.get(currentPosition, currentPosition);
+        }
+        return resolve(currentPosition);
+    }
 
-        // check if there is another snake or ladder present on next position
-        if((snakes.containsKey(nextPosition) || ladders.containsKey(nextPosition)) && currentPosition != nextPosition) {
-            return getNextPosition(nextPosition);
+    public boolean isJumpStart(int position) {
+        return snakes.containsKey(position) || ladders.containsKey(position);
+    }
+
+    // jump starts with their final destination, only available once compiled
+    int[] getJumpStarts() {
+        checkCompiled();
+        return resolvedJumps.keys();
+    }
+
+    // reachability and minimum rolls to win with a single six sided dice unless the board was built with other dice
+    public BoardAnalysis getAnalysis() {
+        if(analysis == null) {
+            compile();
+            analysis = BoardAnalysis.analyze(this, 1, 6);
         }
+        return analysis;
+    }
 
-        return nextPosition;
+    void setAnalysis(BoardAnalysis analysis) {
+        this.analysis = analysis;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getNumSnakes() {
+        return snakes.size();
+    }
+
+    public int getNumLadders() {
+        return ladders.size();
     }
 
     public boolean isWinningGame(int position) {
-        return position == BOARD_SIZE;
+        return position == boardSize;
     }
 
     public boolean isValidMove(int position) {
-        return position <= BOARD_SIZE;
+        return position <= boardSize;
+    }
+
+    // snakes and ladders hold absolute squares, a snake takes precedence if both start on the same square
+    private int jumpFrom(int position) {
+        return snakes.containsKey(position) ? snakes.get(position, position) : ladders.get(position, position);
+    }
+
+    private int resolve(int position) {
+        // a chain without cycle can visit every snake and ladder at most once
+        int maxJumps = snakes.size() + ladders.size();
+        int nextPosition = position;
+
+        for(int jumps = 0; jumps <= maxJumps; jumps++) {
+            // check if there is a snake or ladder present on next position
+            if(!isJumpStart(nextPosition)) {
+                return nextPosition;
+            }
+            nextPosition = jumpFrom(nextPosition);
+        }
+
+        throw new IllegalStateException("Snakes and ladders form an infinite loop starting at position " + position);
+    }
+
+    private void checkNotCompiled() {
+        if(isCompiled()) {
+            throw new IllegalStateException("Board is already compiled");
+        }
+    }
+
+    private void checkCompiled() {
+        if(!isCompiled()) {
+            throw new IllegalStateException("Board is not compiled");
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// plays many full games at once against a local GameSessionManager, one virtual client thread per session
+public class GameLoadGenerator {
+    private static final String LAYOUT_ID = "load-test";
+    private static final int DEFAULT_NUM_SESSIONS = 10_000;
+    private static final int DEFAULT_PLAYERS_PER_SESSION = 4;
+
+    private GameLoadGenerator() {
+    }
+
+    public static SessionMetrics run(GameBoard board, int numSessions, int playersPerSession) {
+        List<String> playerNames = new ArrayList<>(playersPerSession);
+        for(int i = 0; i < playersPerSession; i++) {
+            playerNames.add("Player" + (i + 1));
+        }
+
+        try(GameSessionManager manager = new GameSessionManager()) {
+            manager.registerLayout(LAYOUT_ID, board);
+
+            ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+            List<Future<?>> games = new ArrayList<>(numSessions);
+            for(int i = 0; i < numSessions; i++) {
+                games.add(clients.submit(() -> {
+                    long sessionId = manager.createSession(LAYOUT_ID, playerNames);
+                    while(!manager.submitTurn(sessionId).join().isWinningTurn()) {
+                        // keep playing until somebody wins
+                    }
+                }));
+            }
+            // waits for every client to finish its game
+            clients.close();
+            // a client that failed would otherwise go unnoticed and its game would just be missing from the metrics
+            for(Future<?> game : games) {
+                try {
+                    game.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Load generator client failed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for load generator clients", e);
+                }
+            }
+
+            return manager.getAggregateMetrics();
+        }
+    }
+
+    public static void execute() {
+        GameBoard board = BoardGenerator.generate(0.1, System.nanoTime());
+        long start = System.nanoTime();
+        SessionMetrics metrics = run(board, DEFAULT_NUM_SESSIONS, DEFAULT_PLAYERS_PER_SESSION);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("Played " + DEFAULT_NUM_SESSIONS + " concurrent games in " + elapsedMillis + " ms");
+        System.out.println(metrics);
+    }
+}
@@ -0,0 +1,97 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// rebuilds games from a turn log by applying the logged rolls to the board again
+public class GameReplayer {
+    private final GameBoard board;
+
+    public GameReplayer(GameBoard board) {
+        this.board = board;
+    }
+
+    public int countGames(Path log) throws IOException {
+        int[] games = new int[1];
+        try(FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            TurnLog.read(channel, (type, jump, playerIndex, diceValue, fromPosition, toPosition) -> {
+                if(type == TurnLog.GAME_START) {
+                    games[0]++;
+                }
+                return true;
+            });
+        }
+        return games[0];
+    }
+
+    // replays game number gameIndex (starting at 0) into the sink and returns the final position of every player,
+    // every move is recomputed from the roll and checked against the logged one
+    public int[] replay(Path log, int gameIndex, TurnEventSink sink) throws IOException {
+        Replay replay = new Replay(gameIndex, sink);
+        try(FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            TurnLog.read(channel, replay);
+        }
+        if(replay.positions == null) {
+            throw new IllegalArgumentException("Game " + gameIndex + " not found in " + log);
+        }
+        return replay.positions;
+    }
+
+    private final class Replay implements TurnLog.RecordVisitor {
+        private final int gameIndex;
+        private final TurnEventSink sink;
+        private int games;
+        private int turns;
+        private int[] positions;
+
+        private Replay(int gameIndex, TurnEventSink sink) {
+            this.gameIndex = gameIndex;
+            this.sink = sink;
+        }
+
+        @Override
+        public boolean visit(byte type, int jump, int playerIndex, int diceValue, int fromPosition, int toPosition) {
+            if(type == TurnLog.GAME_START) {
+                if(positions != null) {
+                    return false;
+                }
+                if(games++ == gameIndex) {
+                    if(diceValue != board.getBoardSize()) {
+                        throw new IllegalStateException("Game was played on a board of size " + diceValue + ", not " + board.getBoardSize());
+                    }
+                    positions = new int[playerIndex];
+                    sink.onGameStart(playerIndex, diceValue);
+                }
+                return true;
+            }
+            if(positions == null) {
+                return true;
+            }
+
+            if(type == TurnLog.TURN) {
+                turns++;
+                int currentPosition = positions[playerIndex];
+                int newPosition = currentPosition + diceValue;
+                int finalPosition = board.isValidMove(newPosition) ? board.getNextPosition(newPosition) : currentPosition;
+                if(!board.isValidMove(finalPosition)) {
+                    finalPosition = currentPosition;
+                }
+
+                if(currentPosition != fromPosition || finalPosition != toPosition) {
+                    throw new IllegalStateException("Turn " + turns + " of game " + gameIndex + " moved from " + fromPosition + " to " + toPosition
+                            + " in the log but replays from " + currentPosition + " to " + finalPosition);
+                }
+                positions[playerIndex] = finalPosition;
+                sink.onTurn(playerIndex, diceValue, currentPosition, finalPosition, jump);
+                return true;
+            }
+            if(type == TurnLog.GAME_END) {
+                sink.onGameEnd(playerIndex);
+                return false;
+            }
+            return true;
+        }
+    }
+}
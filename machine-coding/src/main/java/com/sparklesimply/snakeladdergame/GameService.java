@@ -4,41 +4,98 @@ import java.util.List;
 
 public class GameService {
     GameBoard board;
-    List<Player> players;
-    Dice dice;
+    PlayerStates players;
+    DiceSource dice;
+    TurnEventSink sink;
+    private final List<Player> playerList;
+    private int currentPlayerIndex;
+    private int turns;
+    private boolean isGameEnded;
 
     public GameService(GameBoard board, List<Player> players) {
+        this(board, players, new Dice());
+    }
+
+    public GameService(GameBoard board, List<Player> players, DiceSource dice) {
+        this(board, new PlayerStates(players), dice, null, players);
+    }
+
+    public GameService(GameBoard board, List<Player> players, DiceSource dice, TurnEventSink sink) {
+        this(board, new PlayerStates(players), dice, sink, players);
+    }
+
+    public GameService(GameBoard board, PlayerStates players, DiceSource dice, TurnEventSink sink) {
+        this(board, players, dice, sink, null);
+    }
+
+    private GameService(GameBoard board, PlayerStates players, DiceSource dice, TurnEventSink sink, List<Player> playerList) {
         this.board = board;
         this.players = players;
-        this.dice = new Dice();
+        this.dice = dice;
+        // without a sink the moves are printed like before
+        this.sink = sink != null ? sink : new ConsoleTurnEventSink(players);
+        this.playerList = playerList;
     }
 
     public void startGame() {
-        boolean isGameEnded = false;
-        int currentPlayerIndex = 0;
-
         while(!isGameEnded) {
-            Player currentPlayer = this.players.get(currentPlayerIndex);
-            int currentPosition = currentPlayer.getPosition();
-            int diceValue = this.dice.roll();
-            int newPosition = currentPosition + diceValue;
-            int finalPosition = this.board.getNextPosition(newPosition);
-            boolean isValidMove = this.board.isValidMove(newPosition) && this.board.isValidMove(finalPosition);
-
-            if(isValidMove) {
-                currentPlayer.setPosition(finalPosition);
-
-                System.out.println(currentPlayer.getName() + " rolled a " + diceValue + " and moved from "+ currentPosition + " to "+ newPosition);
-
-                if(this.board.isWinningGame(finalPosition)) {
-                    isGameEnded = true;
-                    System.out.println(currentPlayer.getName() + " wins the game!");
-                }
-            } else {
-                System.out.println(currentPlayer.getName() + " rolled a " + diceValue + " and moved from "+ currentPosition + " to "+ currentPosition);
+            playTurn();
+        }
+    }
+
+    public TurnResult playTurn() {
+        if(isGameEnded) {
+            throw new IllegalStateException("Game has already ended");
+        }
+        if(turns++ == 0) {
+            this.sink.onGameStart(this.players.size(), this.board.getBoardSize());
+        }
+
+        int currentPosition = this.players.positions[currentPlayerIndex];
+        int diceValue = this.dice.roll();
+        int newPosition = currentPosition + diceValue;
+        boolean isValidMove = this.board.isValidMove(newPosition);
+        int finalPosition = isValidMove ? this.board.getNextPosition(newPosition) : currentPosition;
+        int jump = TurnEventSink.NO_JUMP;
+
+        this.players.turnsTaken[currentPlayerIndex]++;
+        if(isValidMove && this.board.isValidMove(finalPosition)) {
+            this.players.positions[currentPlayerIndex] = finalPosition;
+            isGameEnded = this.board.isWinningGame(finalPosition);
+            if(finalPosition != newPosition) {
+                jump = finalPosition < newPosition ? TurnEventSink.SNAKE : TurnEventSink.LADDER;
             }
+        } else {
+            finalPosition = currentPosition;
+        }
 
-            currentPlayerIndex = (currentPlayerIndex + 1) % this.players.size();
+        this.sink.onTurn(currentPlayerIndex, diceValue, currentPosition, finalPosition, jump);
+        if(isGameEnded) {
+            this.players.finish(currentPlayerIndex);
+            this.sink.onGameEnd(currentPlayerIndex);
+            copyPositionsToPlayers();
+        }
+
+        TurnResult turn = new TurnResult(currentPlayerIndex, diceValue, currentPosition, finalPosition, isGameEnded);
+        currentPlayerIndex = currentPlayerIndex + 1 == this.players.size() ? 0 : currentPlayerIndex + 1;
+        return turn;
+    }
+
+    public boolean isGameEnded() {
+        return isGameEnded;
+    }
+
+    public PlayerStates getPlayerStates() {
+        return players;
+    }
+
+    // callers passing Player objects see final positions on them once the game ends
+    private void copyPositionsToPlayers() {
+        if(playerList == null) {
+            return;
+        }
+        for(int i = 0; i < playerList.size(); i++) {
+            playerList.get(i).setPosition(this.players.positions[i]);
         }
     }
 }
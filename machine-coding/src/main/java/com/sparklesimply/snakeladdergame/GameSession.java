@@ -0,0 +1,100 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// owns one game, turns are queued by any thread and played one by one on the session's own thread
+class GameSession implements Runnable {
+    // queued after all pending turns on close, so they are still played before the thread stops
+    private static final TurnRequest CLOSE = new TurnRequest(0);
+
+    private final long sessionId;
+    private final GameService gameService;
+    private final BlockingQueue<TurnRequest> requests;
+    private final SessionMetrics metrics;
+    private volatile boolean isClosed;
+    // copied from the game service on the session thread, so other threads read it safely
+    private volatile boolean isGameEnded;
+
+    GameSession(long sessionId, GameBoard board, List<Player> players, DiceSource dice) {
+        this.sessionId = sessionId;
+        this.gameService = new GameService(board, players, dice, NoOpTurnEventSink.INSTANCE);
+        this.requests = new LinkedBlockingQueue<>();
+        this.metrics = new SessionMetrics();
+    }
+
+    long getSessionId() {
+        return sessionId;
+    }
+
+    SessionMetrics getMetrics() {
+        return metrics;
+    }
+
+    boolean isGameEnded() {
+        return isGameEnded;
+    }
+
+    CompletableFuture<TurnResult> submitTurn() {
+        TurnRequest request = new TurnRequest(System.nanoTime());
+        if(isClosed) {
+            request.future.completeExceptionally(new IllegalStateException("Session " + sessionId + " is closed"));
+            return request.future;
+        }
+        requests.add(request);
+        // the session may have closed and drained its queue after the check above,
+        // a request still in the queue then is never played and is failed here instead
+        if(isClosed && requests.remove(request)) {
+            request.future.completeExceptionally(new IllegalStateException("Session " + sessionId + " is closed"));
+        }
+        return request.future;
+    }
+
+    void close() {
+        isClosed = true;
+        requests.add(CLOSE);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while(true) {
+                TurnRequest request = requests.take();
+                if(request == CLOSE) {
+                    break;
+                }
+                try {
+                    TurnResult turn = gameService.playTurn();
+                    isGameEnded = gameService.isGameEnded();
+                    metrics.record(System.nanoTime() - request.submittedAtNanos);
+                    request.future.complete(turn);
+                } catch (IllegalStateException e) {
+                    request.future.completeExceptionally(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // turns still waiting when the session stops can never be played
+            // closed before draining, so a turn submitted after the drain sees it and fails itself
+            isClosed = true;
+            TurnRequest request;
+            while((request = requests.poll()) != null) {
+                if(request != CLOSE) {
+                    request.future.completeExceptionally(new IllegalStateException("Session " + sessionId + " is closed"));
+                }
+            }
+        }
+    }
+
+    private static final class TurnRequest {
+        private final long submittedAtNanos;
+        private final CompletableFuture<TurnResult> future = new CompletableFuture<>();
+
+        private TurnRequest(long submittedAtNanos) {
+            this.submittedAtNanos = submittedAtNanos;
+        }
+    }
+}
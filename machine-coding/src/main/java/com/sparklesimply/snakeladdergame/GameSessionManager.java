@@ -0,0 +1,109 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// hosts many concurrent games, every session plays its turns on its own virtual thread
+public class GameSessionManager implements AutoCloseable {
+    private final Map<String, GameBoard> layouts;
+    private final Map<Long, GameSession> sessions;
+    private final AtomicLong nextSessionId;
+    private volatile boolean isClosed;
+
+    public GameSessionManager() {
+        layouts = new ConcurrentHashMap<>();
+        sessions = new ConcurrentHashMap<>();
+        nextSessionId = new AtomicLong();
+    }
+
+    // board is compiled and shared read only by every session using this layout
+    public GameBoard registerLayout(String layoutId, GameBoard board) {
+        board.compile();
+        GameBoard existing = layouts.putIfAbsent(layoutId, board);
+        if(existing != null && existing != board) {
+            throw new IllegalStateException("Layout " + layoutId + " is already registered");
+        }
+        return board;
+    }
+
+    public long createSession(String layoutId, List<String> playerNames) {
+        return createSession(layoutId, playerNames, new SplittableRandomDice());
+    }
+
+    public long createSession(String layoutId, List<String> playerNames, DiceSource dice) {
+        if(isClosed) {
+            throw new IllegalStateException("Session manager is closed");
+        }
+        GameBoard board = layouts.get(layoutId);
+        if(board == null) {
+            throw new IllegalArgumentException("Layout " + layoutId + " is not registered");
+        }
+        if(playerNames.isEmpty()) {
+            throw new IllegalArgumentException("Session needs at least one player");
+        }
+
+        List<Player> players = new ArrayList<>(playerNames.size());
+        for(String name : playerNames) {
+            players.add(new Player(name));
+        }
+
+        long sessionId = nextSessionId.incrementAndGet();
+        GameSession session = new GameSession(sessionId, board, players, dice);
+        sessions.put(sessionId, session);
+        Thread.ofVirtual().name("game-session-" + sessionId).start(session);
+        return sessionId;
+    }
+
+    public CompletableFuture<TurnResult> submitTurn(long sessionId) {
+        return getSession(sessionId).submitTurn();
+    }
+
+    public boolean isGameEnded(long sessionId) {
+        return getSession(sessionId).isGameEnded();
+    }
+
+    public SessionMetrics getMetrics(long sessionId) {
+        return getSession(sessionId).getMetrics();
+    }
+
+    // metrics of all sessions still hosted
+    public SessionMetrics getAggregateMetrics() {
+        SessionMetrics aggregate = new SessionMetrics();
+        for(GameSession session : sessions.values()) {
+            session.getMetrics().mergeInto(aggregate);
+        }
+        return aggregate;
+    }
+
+    public int getNumSessions() {
+        return sessions.size();
+    }
+
+    // already queued turns are still played before the session thread stops
+    public void closeSession(long sessionId) {
+        GameSession session = sessions.remove(sessionId);
+        if(session != null) {
+            session.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        for(Long sessionId : new ArrayList<>(sessions.keySet())) {
+            closeSession(sessionId);
+        }
+    }
+
+    private GameSession getSession(long sessionId) {
+        GameSession session = sessions.get(sessionId);
+        if(session == null) {
+            throw new IllegalArgumentException("Session " + sessionId + " not found");
+        }
+        return session;
+    }
+}
@@ -0,0 +1,116 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.Arrays;
+
+// open addressing int to int map with linear probing, memory scales with number of entries and nothing is boxed
+public class IntIntHashMap {
+    private static final int FREE_KEY = Integer.MIN_VALUE;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public IntIntHashMap() {
+        this(DEFAULT_CAPACITY / 2);
+    }
+
+    public IntIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return keys[indexOf(key)] != FREE_KEY;
+    }
+
+    public int get(int key, int defaultValue) {
+        int index = indexOf(key);
+        return keys[index] == FREE_KEY ? defaultValue : values[index];
+    }
+
+    public void put(int key, int value) {
+        int index = indexOf(key);
+        if(keys[index] == FREE_KEY) {
+            if(key == FREE_KEY) {
+                throw new IllegalArgumentException("Key " + FREE_KEY + " is reserved");
+            }
+            // keep at most half of the slots used so probe chains stay short
+            if((size + 1) * 2L > keys.length) {
+                grow();
+                index = indexOf(key);
+            }
+            keys[index] = key;
+            size++;
+        }
+        values[index] = value;
+    }
+
+    // keys in no particular order
+    public int[] keys() {
+        int[] result = new int[size];
+        int count = 0;
+        for(int key : keys) {
+            if(key != FREE_KEY) {
+                result[count++] = key;
+            }
+        }
+        return result;
+    }
+
+    private int indexOf(int key) {
+        int index = mix(key) & mask;
+        while(keys[index] != FREE_KEY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void grow() {
+        if(keys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Map is full");
+        }
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] != FREE_KEY) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE_KEY);
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        if(expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size should not be negative");
+        }
+        long capacity = DEFAULT_CAPACITY;
+        while(capacity < expectedSize * 2L && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return (int) capacity;
+    }
+}
@@ -0,0 +1,110 @@
+package com.sparklesimply.snakeladdergame;
+
+public class MarkovResult {
+    private final double expectedTurns;
+    private final double[] winProbabilities;
+    private final double[] gameLengthProbabilities;
+    private final double unresolvedProbability;
+
+    MarkovResult(double expectedTurns, double[] winProbabilities, double[] gameLengthProbabilities, double unresolvedProbability) {
+        this.expectedTurns = expectedTurns;
+        this.winProbabilities = winProbabilities;
+        this.gameLengthProbabilities = gameLengthProbabilities;
+        this.unresolvedProbability = unresolvedProbability;
+    }
+
+    public int getNumPlayers() {
+        return winProbabilities.length;
+    }
+
+    // expected own rolls of a single player to finish
+    public double getExpectedTurns() {
+        return expectedTurns;
+    }
+
+    public double getWinProbability(int playerIndex) {
+        return winProbabilities[playerIndex];
+    }
+
+    // probability that a game ends after exactly the given number of total turns of all players
+    public double getGameLengthProbability(int turns) {
+        return turns < gameLengthProbabilities.length ? gameLengthProbabilities[turns] : 0;
+    }
+
+    public int getMaxGameLength() {
+        return gameLengthProbabilities.length - 1;
+    }
+
+    // probability mass of games longer than the solved number of rounds
+    public double getUnresolvedProbability() {
+        return unresolvedProbability;
+    }
+
+    public double getMeanGameTurns() {
+        double mean = 0;
+        for(int turns = 1; turns < gameLengthProbabilities.length; turns++) {
+            mean += turns * gameLengthProbabilities[turns];
+        }
+        return mean / (1 - unresolvedProbability);
+    }
+
+    public double getGameTurnsStandardDeviation() {
+        double mean = getMeanGameTurns();
+        double variance = 0;
+        for(int turns = 1; turns < gameLengthProbabilities.length; turns++) {
+            variance += (turns - mean) * (turns - mean) * gameLengthProbabilities[turns];
+        }
+        return Math.sqrt(variance / (1 - unresolvedProbability));
+    }
+
+    public int getGameTurnsPercentile(double percentile) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile should be between 0 and 100");
+        }
+        double target = percentile / 100 * (1 - unresolvedProbability);
+        double seen = 0;
+        for(int turns = 1; turns < gameLengthProbabilities.length; turns++) {
+            seen += gameLengthProbabilities[turns];
+            if(seen >= target) {
+                return turns;
+            }
+        }
+        return gameLengthProbabilities.length - 1;
+    }
+
+    // checks simulated win rates and mean game length against the exact values within zScore standard errors
+    public boolean isConsistentWith(SimulationResult result, double zScore) {
+        if(result.getNumPlayers() != getNumPlayers()) {
+            throw new IllegalArgumentException("Simulation was run with " + result.getNumPlayers() + " players, expected " + getNumPlayers());
+        }
+        long games = result.getGames();
+        if(games == 0) {
+            return false;
+        }
+
+        for(int seat = 0; seat < getNumPlayers(); seat++) {
+            double probability = winProbabilities[seat];
+            double standardError = Math.sqrt(probability * (1 - probability) / games);
+            if(Math.abs(result.getWinRate(seat) - probability) > zScore * standardError) {
+                return false;
+            }
+        }
+
+        double standardError = getGameTurnsStandardDeviation() / Math.sqrt(result.getFinishedGames());
+        return Math.abs(result.getMeanTurns() - getMeanGameTurns()) <= zScore * standardError;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("expectedTurns=").append(String.format("%.4f", expectedTurns))
+                .append(", meanGameTurns=").append(String.format("%.4f", getMeanGameTurns()))
+                .append(", p50=").append(getGameTurnsPercentile(50))
+                .append(", p90=").append(getGameTurnsPercentile(90))
+                .append(", p99=").append(getGameTurnsPercentile(99));
+        for(int i = 0; i < winProbabilities.length; i++) {
+            builder.append(", seat").append(i).append("WinProbability=").append(String.format("%.4f", winProbabilities[i]));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,225 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.Arrays;
+
+public class MarkovSolver {
+    private static final double TOLERANCE = 1e-12;
+    private static final int MAX_SWEEPS = 10_000;
+    private static final double TAIL_PROBABILITY = 1e-12;
+    private static final int DEFAULT_MAX_ROUNDS = 100_000;
+    // rounds in a row with the same finishing rate before the rest of the tail is extrapolated
+    private static final int STABLE_ROUNDS = 64;
+
+    private final int boardSize;
+    private final int numRolls;
+    private final double[] rollProbabilities;
+    // destinations[square * numRolls + roll index], every square has the same small number of outgoing transitions
+    private final int[] destinations;
+    private double[] expectedTurns;
+
+    public MarkovSolver(GameBoard board) {
+        this(board, 1, 6);
+    }
+
+    public MarkovSolver(GameBoard board, DiceSource dice) {
+        this(board, dice.getNumDice(), dice.getFaces());
+    }
+
+    public MarkovSolver(GameBoard board, int numDice, int faces) {
+        board.compile();
+        this.boardSize = board.getBoardSize();
+        this.rollProbabilities = rollProbabilities(numDice, faces);
+        this.numRolls = rollProbabilities.length;
+
+        // same rules as GameService, a move past the last square or ending past it leaves the player where it is
+        int minRoll = numDice;
+        if((long) boardSize * numRolls > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Board of size " + boardSize + " is too large for the exact solver");
+        }
+        destinations = new int[boardSize * numRolls];
+        for(int square = 0; square < boardSize; square++) {
+            for(int roll = 0; roll < numRolls; roll++) {
+                int newPosition = square + minRoll + roll;
+                int finalPosition = board.isValidMove(newPosition) ? board.getNextPosition(newPosition) : square;
+                destinations[square * numRolls + roll] = board.isValidMove(finalPosition) ? finalPosition : square;
+            }
+        }
+    }
+
+    // probability of every sum of numDice dice, index 0 is the smallest sum numDice
+    private static double[] rollProbabilities(int numDice, int faces) {
+        if(numDice <= 0 || faces <= 0) {
+            throw new IllegalArgumentException("Number of dice and faces should be positive");
+        }
+
+        double[] probabilities = {1};
+        for(int die = 0; die < numDice; die++) {
+            double[] next = new double[probabilities.length + faces - 1];
+            for(int sum = 0; sum < probabilities.length; sum++) {
+                for(int face = 0; face < faces; face++) {
+                    next[sum + face] += probabilities[sum] / faces;
+                }
+            }
+            probabilities = next;
+        }
+        return probabilities;
+    }
+
+    // expected number of own rolls to reach the last square from every square, solved with gauss-seidel sweeps
+    public double[] getExpectedTurns() {
+        if(expectedTurns != null) {
+            return expectedTurns.clone();
+        }
+
+        double[] expected = new double[boardSize + 1];
+        for(int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            double maxChange = 0;
+
+            // sweeping from the end lets values of later squares flow back within the same sweep
+            for(int square = boardSize - 1; square >= 0; square--) {
+                double sum = 1;
+                double stay = 0;
+                int base = square * numRolls;
+                for(int roll = 0; roll < numRolls; roll++) {
+                    int destination = destinations[base + roll];
+                    if(destination == square) {
+                        stay += rollProbabilities[roll];
+                    } else {
+                        sum += rollProbabilities[roll] * expected[destination];
+                    }
+                }
+
+                double value = sum / (1 - stay);
+                maxChange = Math.max(maxChange, Math.abs(value - expected[square]) / Math.max(1, value));
+                expected[square] = value;
+            }
+
+            if(maxChange < TOLERANCE) {
+                expectedTurns = expected;
+                return expected.clone();
+            }
+        }
+
+        throw new IllegalStateException("Expected turns do not converge, the board may not be winnable");
+    }
+
+    public double getExpectedTurns(int square) {
+        if(expectedTurns == null) {
+            getExpectedTurns();
+        }
+        return expectedTurns[square];
+    }
+
+    public MarkovResult solve(int numPlayers) {
+        return solve(numPlayers, DEFAULT_MAX_ROUNDS);
+    }
+
+    // propagates the position distribution of a single player round by round, players move independently
+    // so per-seat win probability and game length follow from the single player finishing distribution
+    // only squares still carrying probability are visited, and once the share of players finishing per round
+    // stops changing the distribution has settled and the remaining rounds follow from that rate alone
+    public MarkovResult solve(int numPlayers, int maxRounds) {
+        if(numPlayers <= 0) {
+            throw new IllegalArgumentException("Number of players should be positive");
+        }
+
+        double[] current = new double[boardSize + 1];
+        double[] next = new double[boardSize + 1];
+        int[] active = new int[boardSize];
+        int[] nextActive = new int[boardSize];
+        // round in which a square was added to nextActive, avoids clearing a marker array every round
+        int[] addedInRound = new int[boardSize];
+        current[0] = 1;
+        active[0] = 0;
+        int numActive = 1;
+
+        double[] winProbabilities = new double[numPlayers];
+        double[] gameLengthProbabilities = new double[Math.min(maxRounds, 1024) * numPlayers + 1];
+        double notFinishedBefore = 1;
+        double gameNotEnded = 1;
+        double finishRate = 0;
+        int stableRounds = 0;
+        int round = 0;
+
+        while(round < maxRounds && gameNotEnded > TAIL_PROBABILITY) {
+            round++;
+            double finished;
+            if(stableRounds < STABLE_ROUNDS) {
+                // once most squares carry probability a plain sweep is cheaper than tracking them
+                int numNextActive = numActive > boardSize / 4
+                        ? propagate(current, next)
+                        : propagate(current, next, active, numActive, nextActive, addedInRound, round);
+                finished = next[boardSize];
+                next[boardSize] = 0;
+
+                double rate = finished / notFinishedBefore;
+                stableRounds = rate > 0 && Math.abs(rate - finishRate) <= TOLERANCE * rate ? stableRounds + 1 : 0;
+                finishRate = rate;
+
+                double[] swap = current;
+                current = next;
+                next = swap;
+                int[] swapActive = active;
+                active = nextActive;
+                nextActive = swapActive;
+                numActive = numNextActive;
+            } else {
+                finished = notFinishedBefore * finishRate;
+            }
+            double notFinished = Math.max(0, notFinishedBefore - finished);
+
+            // seat wins this round if it finishes now, earlier seats have not finished this round
+            // and later seats have not finished in the previous round
+            if(gameLengthProbabilities.length < round * numPlayers + 1) {
+                gameLengthProbabilities = Arrays.copyOf(gameLengthProbabilities, gameLengthProbabilities.length * 2);
+            }
+            for(int seat = 0; seat < numPlayers; seat++) {
+                double win = finished * Math.pow(notFinished, seat) * Math.pow(notFinishedBefore, numPlayers - 1 - seat);
+                winProbabilities[seat] += win;
+                gameLengthProbabilities[(round - 1) * numPlayers + seat + 1] = win;
+            }
+
+            gameNotEnded = Math.pow(notFinished, numPlayers);
+            notFinishedBefore = notFinished;
+        }
+
+        double[] lengths = Arrays.copyOf(gameLengthProbabilities, round * numPlayers + 1);
+        return new MarkovResult(getExpectedTurns(0), winProbabilities, lengths, gameNotEnded);
+    }
+
+    // moves the probability of every square one roll ahead, current is left empty, returns the board size
+    private int propagate(double[] current, double[] next) {
+        for(int square = 0; square < boardSize; square++) {
+            double probability = current[square];
+            if(probability == 0) {
+                continue;
+            }
+            current[square] = 0;
+            int base = square * numRolls;
+            for(int roll = 0; roll < numRolls; roll++) {
+                next[destinations[base + roll]] += probability * rollProbabilities[roll];
+            }
+        }
+        return boardSize;
+    }
+
+    // same for the active squares only, collects the squares reached into nextActive and returns their count
+    private int propagate(double[] current, double[] next, int[] active, int numActive, int[] nextActive, int[] addedInRound, int round) {
+        int numNextActive = 0;
+        for(int i = 0; i < numActive; i++) {
+            int square = active[i];
+            double probability = current[square];
+            current[square] = 0;
+            int base = square * numRolls;
+            for(int roll = 0; roll < numRolls; roll++) {
+                int destination = destinations[base + roll];
+                next[destination] += probability * rollProbabilities[roll];
+                if(destination < boardSize && addedInRound[destination] != round) {
+                    addedInRound[destination] = round;
+                    nextActive[numNextActive++] = destination;
+                }
+            }
+        }
+        return numNextActive;
+    }
+}
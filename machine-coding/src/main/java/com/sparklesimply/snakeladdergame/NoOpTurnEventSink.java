@@ -0,0 +1,20 @@
+package com.sparklesimply.snakeladdergame;
+
+public class NoOpTurnEventSink implements TurnEventSink {
+    public static final NoOpTurnEventSink INSTANCE = new NoOpTurnEventSink();
+
+    private NoOpTurnEventSink() {
+    }
+
+    @Override
+    public void onGameStart(int numPlayers, int boardSize) {
+    }
+
+    @Override
+    public void onTurn(int playerIndex, int diceValue, int fromPosition, int toPosition, int jump) {
+    }
+
+    @Override
+    public void onGameEnd(int winnerIndex) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.List;
+
+// state of every player of a game kept in parallel primitive arrays, names are only needed for output
+public class PlayerStates {
+    private static final int NOT_FINISHED = 0;
+
+    private final String[] names;
+    final int[] positions;
+    final int[] turnsTaken;
+    final int[] ranks;
+    private int numFinished;
+
+    // players are named Player1, Player2 ... when asked for a name
+    public PlayerStates(int numPlayers) {
+        if(numPlayers <= 0) {
+            throw new IllegalArgumentException("Number of players should be positive");
+        }
+        this.names = null;
+        this.positions = new int[numPlayers];
+        this.turnsTaken = new int[numPlayers];
+        this.ranks = new int[numPlayers];
+    }
+
+    public PlayerStates(List<Player> players) {
+        if(players.isEmpty()) {
+            throw new IllegalArgumentException("Number of players should be positive");
+        }
+        this.names = new String[players.size()];
+        this.positions = new int[players.size()];
+        this.turnsTaken = new int[players.size()];
+        this.ranks = new int[players.size()];
+        for(int i = 0; i < players.size(); i++) {
+            names[i] = players.get(i).getName();
+            positions[i] = players.get(i).getPosition();
+        }
+    }
+
+    public int size() {
+        return positions.length;
+    }
+
+    public String getName(int playerIndex) {
+        return names == null ? "Player" + (playerIndex + 1) : names[playerIndex];
+    }
+
+    public int getPosition(int playerIndex) {
+        return positions[playerIndex];
+    }
+
+    public void setPosition(int playerIndex, int position) {
+        positions[playerIndex] = position;
+    }
+
+    public int getTurnsTaken(int playerIndex) {
+        return turnsTaken[playerIndex];
+    }
+
+    // 1 for the first player to finish, 0 while still playing
+    public int getRank(int playerIndex) {
+        return ranks[playerIndex];
+    }
+
+    public boolean isFinished(int playerIndex) {
+        return ranks[playerIndex] != NOT_FINISHED;
+    }
+
+    public int getNumFinished() {
+        return numFinished;
+    }
+
+    int finish(int playerIndex) {
+        ranks[playerIndex] = ++numFinished;
+        return numFinished;
+    }
+}
@@ -0,0 +1,58 @@
+package com.sparklesimply.snakeladdergame;
+
+// deterministic splitmix64 stream, same seed always gives same rolls on every jvm so a game can be replayed
+public class ReplayableDice extends AbstractDiceSource {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+    private long state;
+
+    public ReplayableDice(long seed) {
+        this(DEFAULT_NUM_DICE, DEFAULT_FACES, seed);
+    }
+
+    public ReplayableDice(int numDice, int faces, long seed) {
+        super(numDice, faces);
+        this.seed = seed;
+        this.state = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // starts the stream again from the first roll
+    public void reset() {
+        state = seed;
+    }
+
+    @Override
+    public int roll() {
+        int sum = numDice;
+        for(int i = 0; i < numDice; i++) {
+            sum += nextFace();
+        }
+        return sum;
+    }
+
+    @Override
+    public void roll(int[] rolls, int offset, int length) {
+        checkBounds(rolls, offset, length);
+        for(int i = offset; i < offset + length; i++) {
+            int sum = numDice;
+            for(int j = 0; j < numDice; j++) {
+                sum += nextFace();
+            }
+            rolls[i] = sum;
+        }
+    }
+
+    // zero based face, scaled from the upper 32 bits to avoid a modulo
+    private int nextFace() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z = z ^ (z >>> 31);
+        return (int) (((z >>> 32) * faces) >>> 32);
+    }
+}
@@ -0,0 +1,94 @@
+package com.sparklesimply.snakeladdergame;
+
+// keeps the most recent turns in preallocated parallel arrays, older turns are overwritten, not thread safe
+public class RingBufferTurnEventSink implements TurnEventSink {
+    private final int[] playerIndexes;
+    private final int[] diceValues;
+    private final int[] fromPositions;
+    private final int[] toPositions;
+    private final byte[] jumps;
+    private final int mask;
+    private long totalTurns;
+    private int winnerIndex = -1;
+
+    // capacity is rounded up to a power of two
+    public RingBufferTurnEventSink(int capacity) {
+        if(capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity should be between 1 and " + (1 << 30));
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        playerIndexes = new int[size];
+        diceValues = new int[size];
+        fromPositions = new int[size];
+        toPositions = new int[size];
+        jumps = new byte[size];
+        mask = size - 1;
+    }
+
+    @Override
+    public void onGameStart(int numPlayers, int boardSize) {
+        totalTurns = 0;
+        winnerIndex = -1;
+    }
+
+    @Override
+    public void onTurn(int playerIndex, int diceValue, int fromPosition, int toPosition, int jump) {
+        int slot = (int) totalTurns & mask;
+        playerIndexes[slot] = playerIndex;
+        diceValues[slot] = diceValue;
+        fromPositions[slot] = fromPosition;
+        toPositions[slot] = toPosition;
+        jumps[slot] = (byte) jump;
+        totalTurns++;
+    }
+
+    @Override
+    public void onGameEnd(int winnerIndex) {
+        this.winnerIndex = winnerIndex;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    // number of turns of the current game, including the ones already overwritten
+    public long getTotalTurns() {
+        return totalTurns;
+    }
+
+    public int size() {
+        return (int) Math.min(totalTurns, mask + 1);
+    }
+
+    public int getWinnerIndex() {
+        return winnerIndex;
+    }
+
+    // index 0 is the oldest retained turn, size() - 1 the latest
+    public int getPlayerIndex(int index) {
+        return playerIndexes[slot(index)];
+    }
+
+    public int getDiceValue(int index) {
+        return diceValues[slot(index)];
+    }
+
+    public int getFromPosition(int index) {
+        return fromPositions[slot(index)];
+    }
+
+    public int getToPosition(int index) {
+        return toPositions[slot(index)];
+    }
+
+    public int getJump(int index) {
+        return jumps[slot(index)];
+    }
+
+    private int slot(int index) {
+        if(index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        }
+        return (int) (totalTurns - size() + index) & mask;
+    }
+}
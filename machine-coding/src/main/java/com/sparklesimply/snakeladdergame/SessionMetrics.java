@@ -0,0 +1,72 @@
+package com.sparklesimply.snakeladdergame;
+
+// turn latency from submit to completion, bucketed by power of two nanoseconds
+public class SessionMetrics {
+    private static final int NUM_BUCKETS = 64;
+
+    private final long[] latencyBuckets = new long[NUM_BUCKETS];
+    private long turns;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    synchronized void record(long latencyNanos) {
+        long latency = Math.max(0, latencyNanos);
+        latencyBuckets[NUM_BUCKETS - Long.numberOfLeadingZeros(latency)]++;
+        turns++;
+        totalLatencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+    }
+
+    synchronized SessionMetrics mergeInto(SessionMetrics target) {
+        synchronized(target) {
+            for(int i = 0; i < NUM_BUCKETS; i++) {
+                target.latencyBuckets[i] += latencyBuckets[i];
+            }
+            target.turns += turns;
+            target.totalLatencyNanos += totalLatencyNanos;
+            target.maxLatencyNanos = Math.max(target.maxLatencyNanos, maxLatencyNanos);
+        }
+        return target;
+    }
+
+    public synchronized long getTurns() {
+        return turns;
+    }
+
+    public synchronized double getMeanLatencyNanos() {
+        return turns == 0 ? 0 : (double) totalLatencyNanos / turns;
+    }
+
+    public synchronized long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    // upper bound of the power of two bucket holding the percentile
+    public synchronized long getLatencyPercentileNanos(double percentile) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile should be between 0 and 100");
+        }
+        if(turns == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * turns));
+        long seen = 0;
+        for(int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+            seen += latencyBuckets[bucket];
+            if(seen >= rank) {
+                return Math.min(maxLatencyNanos, (1L << bucket) - 1);
+            }
+        }
+        return maxLatencyNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "turns=" + turns
+                + ", meanLatencyMicros=" + String.format("%.2f", getMeanLatencyNanos() / 1000)
+                + ", p50LatencyMicros=" + getLatencyPercentileNanos(50) / 1000
+                + ", p99LatencyMicros=" + getLatencyPercentileNanos(99) / 1000
+                + ", maxLatencyMicros=" + maxLatencyNanos / 1000;
+    }
+}
@@ -0,0 +1,128 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class SimulationEngine {
+    private static final int DEFAULT_MAX_TURNS = 10_000;
+    private static final int DEFAULT_NUM_DICE = 1;
+    private static final int DEFAULT_FACES = 6;
+    private static final int GAMES_PER_BATCH = 4096;
+    private static final int ROLLS_PER_BLOCK = 1024;
+
+    private final GameBoard board;
+    private final int numPlayers;
+    private final int maxTurns;
+    private final int numDice;
+    private final int faces;
+
+    public SimulationEngine(GameBoard board, int numPlayers) {
+        this(board, numPlayers, DEFAULT_MAX_TURNS);
+    }
+
+    public SimulationEngine(GameBoard board, int numPlayers, int maxTurns) {
+        this(board, numPlayers, maxTurns, DEFAULT_NUM_DICE, DEFAULT_FACES);
+    }
+
+    public SimulationEngine(GameBoard board, int numPlayers, int maxTurns, int numDice, int faces) {
+        if(numPlayers <= 0) {
+            throw new IllegalArgumentException("Number of players should be positive");
+        }
+        if(maxTurns <= 0) {
+            throw new IllegalArgumentException("Max turns should be positive");
+        }
+        this.board = board;
+        this.numPlayers = numPlayers;
+        this.maxTurns = maxTurns;
+        this.numDice = numDice;
+        this.faces = faces;
+    }
+
+    public SimulationResult run(int numGames) {
+        return run(numGames, System.nanoTime());
+    }
+
+    // games are split in fixed size batches with their own dice, so same seed gives same result on any number of cores
+    public SimulationResult run(int numGames, long seed) {
+        if(numGames < 0) {
+            throw new IllegalArgumentException("Number of games should not be negative");
+        }
+        board.compile();
+
+        int numBatches = Math.max(1, (numGames + GAMES_PER_BATCH - 1) / GAMES_PER_BATCH);
+        SplittableRandomDice root = new SplittableRandomDice(numDice, faces, seed);
+        SplittableRandomDice[] dice = new SplittableRandomDice[numBatches];
+        for(int i = 0; i < numBatches; i++) {
+            dice[i] = root.split();
+        }
+
+        return IntStream.range(0, numBatches)
+                .parallel()
+                .mapToObj(batch -> {
+                    int games = Math.min(GAMES_PER_BATCH, numGames - batch * GAMES_PER_BATCH);
+                    return new Batch(dice[batch]).run(games);
+                })
+                .reduce(SimulationResult::merge)
+                .orElseThrow();
+    }
+
+    private final class Batch {
+        private final DiceSource dice;
+        private final int[] rolls = new int[ROLLS_PER_BLOCK];
+        private final int[] positions = new int[numPlayers];
+        private final SimulationResult result = new SimulationResult(numPlayers);
+        private int rollIndex = ROLLS_PER_BLOCK;
+
+        private Batch(DiceSource dice) {
+            this.dice = dice;
+        }
+
+        private SimulationResult run(int numGames) {
+            for(int game = 0; game < numGames; game++) {
+                playGame();
+            }
+            return result;
+        }
+
+        private int nextRoll() {
+            if(rollIndex == ROLLS_PER_BLOCK) {
+                dice.roll(rolls, 0, ROLLS_PER_BLOCK);
+                rollIndex = 0;
+            }
+            return rolls[rollIndex++];
+        }
+
+        private void playGame() {
+            Arrays.fill(positions, 0);
+            int currentPlayerIndex = 0;
+
+            for(int turn = 1; turn <= maxTurns; turn++) {
+                int currentPosition = positions[currentPlayerIndex];
+                int newPosition = currentPosition + nextRoll();
+
+                // invalid rolls are skipped before resolving so that every resolved move stays inside the jump table
+                if(board.isValidMove(newPosition)) {
+                    int finalPosition = board.getNextPosition(newPosition);
+                    if(board.isValidMove(finalPosition)) {
+                        positions[currentPlayerIndex] = finalPosition;
+
+                        if(finalPosition < newPosition) {
+                            result.recordSnakeHit();
+                        } else if(finalPosition > newPosition) {
+                            result.recordLadderHit();
+                        }
+
+                        if(board.isWinningGame(finalPosition)) {
+                            result.recordWin(currentPlayerIndex, turn);
+                            return;
+                        }
+                    }
+                }
+
+                currentPlayerIndex = currentPlayerIndex + 1 == numPlayers ? 0 : currentPlayerIndex + 1;
+            }
+
+            result.recordUnfinished();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.Arrays;
+
+public class SimulationResult {
+    private static final int INITIAL_HISTOGRAM_SIZE = 256;
+
+    private final long[] wins;
+    private long[] turnsHistogram;
+    private long games;
+    private long unfinishedGames;
+    private long totalTurns;
+    private long snakeHits;
+    private long ladderHits;
+
+    SimulationResult(int numPlayers) {
+        this.wins = new long[numPlayers];
+        this.turnsHistogram = new long[INITIAL_HISTOGRAM_SIZE];
+    }
+
+    void recordWin(int playerIndex, int turns) {
+        ensureHistogramSize(turns + 1);
+        games++;
+        wins[playerIndex]++;
+        turnsHistogram[turns]++;
+        totalTurns += turns;
+    }
+
+    void recordSnakeHit() {
+        snakeHits++;
+    }
+
+    void recordLadderHit() {
+        ladderHits++;
+    }
+
+    void recordUnfinished() {
+        games++;
+        unfinishedGames++;
+    }
+
+    SimulationResult merge(SimulationResult other) {
+        for(int i = 0; i < wins.length; i++) {
+            wins[i] += other.wins[i];
+        }
+        ensureHistogramSize(other.turnsHistogram.length);
+        for(int i = 0; i < other.turnsHistogram.length; i++) {
+            turnsHistogram[i] += other.turnsHistogram[i];
+        }
+        games += other.games;
+        unfinishedGames += other.unfinishedGames;
+        totalTurns += other.totalTurns;
+        snakeHits += other.snakeHits;
+        ladderHits += other.ladderHits;
+        return this;
+    }
+
+    private void ensureHistogramSize(int size) {
+        if(size > turnsHistogram.length) {
+            turnsHistogram = Arrays.copyOf(turnsHistogram, Math.max(size, turnsHistogram.length * 2));
+        }
+    }
+
+    public int getNumPlayers() {
+        return wins.length;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getFinishedGames() {
+        return games - unfinishedGames;
+    }
+
+    public long getUnfinishedGames() {
+        return unfinishedGames;
+    }
+
+    // turns are counted as total dice rolls of all players in a finished game
+    public double getMeanTurns() {
+        long finishedGames = getFinishedGames();
+        return finishedGames == 0 ? 0 : (double) totalTurns / finishedGames;
+    }
+
+    public int getTurnsPercentile(double percentile) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile should be between 0 and 100");
+        }
+        long finishedGames = getFinishedGames();
+        if(finishedGames == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * finishedGames));
+        long seen = 0;
+        for(int turns = 0; turns < turnsHistogram.length; turns++) {
+            seen += turnsHistogram[turns];
+            if(seen >= rank) {
+                return turns;
+            }
+        }
+        return turnsHistogram.length - 1;
+    }
+
+    public long getWins(int playerIndex) {
+        return wins[playerIndex];
+    }
+
+    public double getWinRate(int playerIndex) {
+        return games == 0 ? 0 : (double) wins[playerIndex] / games;
+    }
+
+    public long getSnakeHits() {
+        return snakeHits;
+    }
+
+    public long getLadderHits() {
+        return ladderHits;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("games=").append(games)
+                .append(", unfinished=").append(unfinishedGames)
+                .append(", meanTurns=").append(String.format("%.2f", getMeanTurns()))
+                .append(", p50=").append(getTurnsPercentile(50))
+                .append(", p90=").append(getTurnsPercentile(90))
+                .append(", p99=").append(getTurnsPercentile(99))
+                .append(", snakeHits=").append(snakeHits)
+                .append(", ladderHits=").append(ladderHits);
+        for(int i = 0; i < wins.length; i++) {
+            builder.append(", seat").append(i).append("WinRate=").append(String.format("%.4f", getWinRate(i)));
+        }
+        return builder.toString();
+    }
+}
@@ -7,7 +7,7 @@ import java.util.Scanner;
 public class SnakeLadderGameDemo {
 
     public static void execute() {
-        GameBoard board = new GameBoard();
+        BoardBuilder boardBuilder = new BoardBuilder();
         List<Player> players = new ArrayList<>();
         Scanner scanner = new Scanner(System.in);
 
@@ -19,7 +19,7 @@ public class SnakeLadderGameDemo {
             for(int i=0; i<numSnakes; i++) {
                 int head = scanner.nextInt();
                 int tail = scanner.nextInt();
-                board.addSnakes(head, tail);
+                boardBuilder.addSnake(head, tail);
             }
 
             System.out.println("Enter number of ladders");
@@ -29,7 +29,7 @@ public class SnakeLadderGameDemo {
             for(int i=0; i<numLadders; i++) {
                 int start = scanner.nextInt();
                 int end = scanner.nextInt();
-                board.addLadders(start, end);
+                boardBuilder.addLadder(start, end);
             }
 
             System.out.println("Enter number of players");
@@ -42,9 +42,12 @@ public class SnakeLadderGameDemo {
                 players.add(new Player(name));
             }
 
+            GameBoard board = boardBuilder.build();
             GameService gameService = new GameService(board, players);
             gameService.startGame();
 
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.out.println(e.getMessage());
         } catch (Exception e) {
             System.out.println("Error reading inputs");
         } finally {
@@ -0,0 +1,51 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.SplittableRandom;
+
+// not thread safe, use split() to hand an independent dice to every thread
+public class SplittableRandomDice extends AbstractDiceSource {
+    private final SplittableRandom random;
+
+    public SplittableRandomDice() {
+        this(DEFAULT_NUM_DICE, DEFAULT_FACES);
+    }
+
+    public SplittableRandomDice(int numDice, int faces) {
+        this(numDice, faces, new SplittableRandom());
+    }
+
+    public SplittableRandomDice(int numDice, int faces, long seed) {
+        this(numDice, faces, new SplittableRandom(seed));
+    }
+
+    private SplittableRandomDice(int numDice, int faces, SplittableRandom random) {
+        super(numDice, faces);
+        this.random = random;
+    }
+
+    public SplittableRandomDice split() {
+        return new SplittableRandomDice(numDice, faces, random.split());
+    }
+
+    @Override
+    public int roll() {
+        int sum = numDice;
+        for(int i = 0; i < numDice; i++) {
+            sum += random.nextInt(faces);
+        }
+        return sum;
+    }
+
+    @Override
+    public void roll(int[] rolls, int offset, int length) {
+        checkBounds(rolls, offset, length);
+        SplittableRandom random = this.random;
+        for(int i = offset; i < offset + length; i++) {
+            int sum = numDice;
+            for(int j = 0; j < numDice; j++) {
+                sum += random.nextInt(faces);
+            }
+            rolls[i] = sum;
+        }
+    }
+}
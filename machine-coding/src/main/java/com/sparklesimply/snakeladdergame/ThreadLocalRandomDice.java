@@ -0,0 +1,38 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// can be shared between threads, every thread rolls its own ThreadLocalRandom
+public class ThreadLocalRandomDice extends AbstractDiceSource {
+
+    public ThreadLocalRandomDice() {
+        this(DEFAULT_NUM_DICE, DEFAULT_FACES);
+    }
+
+    public ThreadLocalRandomDice(int numDice, int faces) {
+        super(numDice, faces);
+    }
+
+    @Override
+    public int roll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sum = numDice;
+        for(int i = 0; i < numDice; i++) {
+            sum += random.nextInt(faces);
+        }
+        return sum;
+    }
+
+    @Override
+    public void roll(int[] rolls, int offset, int length) {
+        checkBounds(rolls, offset, length);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int i = offset; i < offset + length; i++) {
+            int sum = numDice;
+            for(int j = 0; j < numDice; j++) {
+                sum += random.nextInt(faces);
+            }
+            rolls[i] = sum;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.sparklesimply.snakeladdergame;
+
+// many tokens on one board, every round moves all players still playing in one pass over primitive arrays
+// and players keep playing until each of them has finished and got a rank
+public class TournamentGame {
+    private final GameBoard board;
+    private final PlayerStates players;
+    private final DiceSource dice;
+    private final TurnEventSink sink;
+    private final int[] rolls;
+    private final int[] active;
+    private int numActive;
+    private int rounds;
+
+    public TournamentGame(GameBoard board, int numPlayers) {
+        this(board, new PlayerStates(numPlayers), new SplittableRandomDice(), NoOpTurnEventSink.INSTANCE);
+    }
+
+    public TournamentGame(GameBoard board, PlayerStates players, DiceSource dice, TurnEventSink sink) {
+        board.compile();
+        this.board = board;
+        this.players = players;
+        this.dice = dice;
+        this.sink = sink;
+        this.rolls = new int[players.size()];
+        this.active = new int[players.size()];
+        for(int i = 0; i < players.size(); i++) {
+            if(!players.isFinished(i)) {
+                active[numActive++] = i;
+            }
+        }
+        sink.onGameStart(players.size(), board.getBoardSize());
+    }
+
+    public boolean isFinished() {
+        return numActive == 0;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public PlayerStates getPlayerStates() {
+        return players;
+    }
+
+    // plays one turn of every player still on the board, returns number of players that finished in this round
+    public int playRound() {
+        if(numActive == 0) {
+            throw new IllegalStateException("Tournament has already ended");
+        }
+
+        int[] positions = players.positions;
+        int[] turnsTaken = players.turnsTaken;
+        int[] active = this.active;
+        int numActive = this.numActive;
+        int remaining = 0;
+
+        // one bulk roll for the whole round instead of a call per player
+        dice.roll(rolls, 0, numActive);
+
+        for(int i = 0; i < numActive; i++) {
+            int playerIndex = active[i];
+            int currentPosition = positions[playerIndex];
+            int diceValue = rolls[i];
+            int newPosition = currentPosition + diceValue;
+            int finalPosition = currentPosition;
+            int jump = TurnEventSink.NO_JUMP;
+
+            if(board.isValidMove(newPosition)) {
+                int nextPosition = board.getNextPosition(newPosition);
+                if(board.isValidMove(nextPosition)) {
+                    finalPosition = nextPosition;
+                    if(nextPosition != newPosition) {
+                        jump = nextPosition < newPosition ? TurnEventSink.SNAKE : TurnEventSink.LADDER;
+                    }
+                }
+            }
+
+            positions[playerIndex] = finalPosition;
+            turnsTaken[playerIndex]++;
+            sink.onTurn(playerIndex, diceValue, currentPosition, finalPosition, jump);
+
+            if(board.isWinningGame(finalPosition)) {
+                if(players.finish(playerIndex) == 1) {
+                    sink.onGameEnd(playerIndex);
+                }
+            } else {
+                // stable compaction keeps turn order for the next round
+                active[remaining++] = playerIndex;
+            }
+        }
+
+        int finished = numActive - remaining;
+        this.numActive = remaining;
+        rounds++;
+        return finished;
+    }
+
+    public void playToCompletion(int maxRounds) {
+        while(numActive > 0 && rounds < maxRounds) {
+            playRound();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.sparklesimply.snakeladdergame;
+
+// receives compact turn events from GameService, implementations should not allocate per event
+public interface TurnEventSink {
+    int NO_JUMP = 0;
+    int SNAKE = 1;
+    int LADDER = 2;
+
+    void onGameStart(int numPlayers, int boardSize);
+
+    void onTurn(int playerIndex, int diceValue, int fromPosition, int toPosition, int jump);
+
+    void onGameEnd(int winnerIndex);
+}
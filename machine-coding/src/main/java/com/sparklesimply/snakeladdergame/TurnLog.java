@@ -0,0 +1,77 @@
+package com.sparklesimply.snakeladdergame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// binary turn log layout, every record is RECORD_SIZE bytes:
+// type (1) | jump (1) | reserved (2) | player index (4) | dice value (4) | from (4) | to (4)
+// the first record is a header holding MAGIC and VERSION, game start holds number of players and board size,
+// game end holds the winner index, a zero type marks the unused tail of a log that was not closed
+class TurnLog {
+    static final int RECORD_SIZE = 20;
+    static final byte END_OF_LOG = 0;
+    static final byte HEADER = 1;
+    static final byte GAME_START = 2;
+    static final byte TURN = 3;
+    static final byte GAME_END = 4;
+    static final int MAGIC = 0x534c5447;
+    static final int VERSION = 1;
+
+    private static final int RECORDS_PER_READ = 4096;
+
+    interface RecordVisitor {
+        // return false to stop reading
+        boolean visit(byte type, int jump, int playerIndex, int diceValue, int fromPosition, int toPosition);
+    }
+
+    private TurnLog() {
+    }
+
+    static void putRecord(ByteBuffer buffer, int offset, byte type, int jump, int playerIndex, int diceValue, int fromPosition, int toPosition) {
+        buffer.put(offset, type);
+        buffer.put(offset + 1, (byte) jump);
+        buffer.putShort(offset + 2, (short) 0);
+        buffer.putInt(offset + 4, playerIndex);
+        buffer.putInt(offset + 8, diceValue);
+        buffer.putInt(offset + 12, fromPosition);
+        buffer.putInt(offset + 16, toPosition);
+    }
+
+    // visits records after the header and returns the byte length of the valid part of the log
+    static long read(FileChannel channel, RecordVisitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * RECORDS_PER_READ);
+        long position = 0;
+
+        while(true) {
+            buffer.clear();
+            int bytesRead = 0;
+            while(buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + bytesRead);
+                if(read < 0) {
+                    break;
+                }
+                bytesRead += read;
+            }
+
+            for(int offset = 0; offset + RECORD_SIZE <= bytesRead; offset += RECORD_SIZE) {
+                byte type = buffer.get(offset);
+                if(type == END_OF_LOG) {
+                    return position;
+                }
+                if(position == 0) {
+                    if(type != HEADER || buffer.getInt(offset + 4) != MAGIC || buffer.getInt(offset + 8) != VERSION) {
+                        throw new IOException("Not a turn log");
+                    }
+                } else if(!visitor.visit(type, buffer.get(offset + 1), buffer.getInt(offset + 4), buffer.getInt(offset + 8), buffer.getInt(offset + 12), buffer.getInt(offset + 16))) {
+                    return position + RECORD_SIZE;
+                }
+                position += RECORD_SIZE;
+            }
+
+            if(bytesRead < buffer.capacity()) {
+                return position;
+            }
+        }
+    }
+}
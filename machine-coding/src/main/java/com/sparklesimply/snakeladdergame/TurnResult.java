@@ -0,0 +1,37 @@
+package com.sparklesimply.snakeladdergame;
+
+public class TurnResult {
+    private final int playerIndex;
+    private final int diceValue;
+    private final int fromPosition;
+    private final int toPosition;
+    private final boolean isWinningTurn;
+
+    public TurnResult(int playerIndex, int diceValue, int fromPosition, int toPosition, boolean isWinningTurn) {
+        this.playerIndex = playerIndex;
+        this.diceValue = diceValue;
+        this.fromPosition = fromPosition;
+        this.toPosition = toPosition;
+        this.isWinningTurn = isWinningTurn;
+    }
+
+    public int getPlayerIndex() {
+        return playerIndex;
+    }
+
+    public int getDiceValue() {
+        return diceValue;
+    }
+
+    public int getFromPosition() {
+        return fromPosition;
+    }
+
+    public int getToPosition() {
+        return toPosition;
+    }
+
+    public boolean isWinningTurn() {
+        return isWinningTurn;
+    }
+}